@@ -0,0 +1,22 @@
+package nl.han.ica.icss.benchmark;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/*
+ * Entry point of benchmarks.jar. Runs JMH with the GC profiler enabled, so every
+ * result also reports the allocation rate (gc.alloc.rate.norm is bytes per operation).
+ * All JMH command line options are passed on; an explicit -prof replaces the default.
+ */
+public class BenchmarkMain {
+
+    public static void main(String[] args) throws Exception {
+        List<String> jmhArgs = new ArrayList<>(Arrays.asList(args));
+        if (!jmhArgs.contains("-prof")) {
+            jmhArgs.add("-prof");
+            jmhArgs.add("gc");
+        }
+        org.openjdk.jmh.Main.main(jmhArgs.toArray(new String[0]));
+    }
+}
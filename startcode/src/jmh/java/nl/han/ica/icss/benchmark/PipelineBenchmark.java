@@ -0,0 +1,152 @@
+package nl.han.ica.icss.benchmark;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.LineIndex;
+import nl.han.ica.icss.generator.Generator;
+import nl.han.ica.icss.generator.SourceMap;
+import nl.han.ica.icss.transforms.Evaluator;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/*
+ * Benchmarks of the individual compiler phases and of a complete compile,
+ * over the number of stylerules, the if-nesting depth and the number of variables.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PipelineBenchmark {
+
+    @Param({"100", "10000"})
+    public int rules;
+
+    @Param({"0", "4"})
+    public int nesting;
+
+    @Param({"8", "256"})
+    public int variables;
+
+    String input;
+    private AST parsedAST;
+    private AST transformedAST;
+    private AST mappableAST;
+    private LineIndex lineIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        input = new WorkloadGenerator(42)
+                .setRules(rules)
+                .setNestingDepth(nesting)
+                .setVariables(variables)
+                .generate();
+
+        parsedAST = compile(input, false);
+        transformedAST = compile(input, true);
+        mappableAST = compile(input, true, false);
+        lineIndex = new LineIndex(input);
+    }
+
+    static AST compile(String input, boolean transform) {
+        return compile(input, transform, true);
+    }
+
+    //Interned selectors have no source position, so a source map needs an AST without interning
+    static AST compile(String input, boolean transform, boolean interning) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setInterning(interning);
+        pipeline.parseString(input);
+        if (!pipeline.check()) {
+            throw new IllegalStateException("Benchmark input does not check: " + pipeline.getErrors());
+        }
+        if (transform) {
+            pipeline.transform();
+        }
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public AST parse() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public AST parseDirect() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setDirectASTConstruction(true);
+        pipeline.parseString(input);
+        return pipeline.getAST();
+    }
+
+    @Benchmark
+    public AST check() {
+        new Checker().check(parsedAST);
+        return parsedAST;
+    }
+
+    /*
+     The evaluator rewrites the AST in place, so each invocation gets a freshly parsed and checked AST.
+     */
+    @State(Scope.Thread)
+    public static class UntransformedAST {
+        AST ast;
+
+        @Setup(Level.Invocation)
+        public void setup(PipelineBenchmark benchmark) {
+            ast = compile(benchmark.input, false);
+        }
+    }
+
+    @Benchmark
+    public AST transform(UntransformedAST untransformed) {
+        new Evaluator().apply(untransformed.ast);
+        return untransformed.ast;
+    }
+
+    @Benchmark
+    public String generate() {
+        return new Generator().generate(transformedAST);
+    }
+
+    @Benchmark
+    public String generateParallel() {
+        Generator generator = new Generator();
+        generator.setParallel(true);
+        return generator.generate(transformedAST);
+    }
+
+    /*
+     The same AST with and without a source map, so the cost of the map is the difference.
+     */
+    @Benchmark
+    public StringBuilder generateUnmapped() throws IOException {
+        StringBuilder css = new StringBuilder();
+        new Generator().generate(mappableAST, css, null);
+        return css;
+    }
+
+    @Benchmark
+    public SourceMap generateWithSourceMap() throws IOException {
+        SourceMap sourceMap = new SourceMap(lineIndex);
+        new Generator().generate(mappableAST, new StringBuilder(), sourceMap);
+        return sourceMap;
+    }
+
+    @Benchmark
+    public String endToEnd() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        pipeline.check();
+        pipeline.transform();
+        return pipeline.generate();
+    }
+}
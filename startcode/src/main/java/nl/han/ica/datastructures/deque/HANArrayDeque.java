@@ -0,0 +1,142 @@
+package nl.han.ica.datastructures.deque;
+
+import nl.han.ica.datastructures.queue.IHANQueue;
+import nl.han.ica.datastructures.stack.IHANStack;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Ring buffer that can be used both as a stack and as a queue.
+ * The top of the stack and the front of the queue are the same end, so
+ * peek means the same for both: push adds at the front, enqueue at the back,
+ * pop and dequeue remove from the front. All operations are (amortised) O(1).
+ * The capacity is always a power of two, so indices wrap with a bit mask.
+ */
+public class HANArrayDeque<T> implements IHANStack<T>, IHANQueue<T>, Iterable<T> {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private Object[] elements;
+    private int head;
+    private int size;
+    private int modCount;
+
+    public HANArrayDeque() {
+        this.elements = new Object[INITIAL_CAPACITY];
+        this.head = 0;
+        this.size = 0;
+    }
+
+    @Override
+    public void push(T value) {
+        growIfFull();
+        head = (head - 1) & (elements.length - 1);
+        elements[head] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void enqueue(T value) {
+        growIfFull();
+        elements[(head + size) & (elements.length - 1)] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public T pop() {
+        if (size == 0) {
+            throw new IllegalStateException("Stack is empty");
+        }
+        return removeFront();
+    }
+
+    @Override
+    public T dequeue() {
+        if (size == 0) {
+            throw new IllegalStateException("Queue is empty");
+        }
+        return removeFront();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T peek() {
+        if (size == 0) {
+            throw new IllegalStateException("Deque is empty");
+        }
+        return (T) elements[head];
+    }
+
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            elements[(head + i) & (elements.length - 1)] = null;
+        }
+        head = 0;
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    private T removeFront() {
+        T value = (T) elements[head];
+        elements[head] = null;
+        head = (head + 1) & (elements.length - 1);
+        size--;
+        modCount++;
+        return value;
+    }
+
+    private void growIfFull() {
+        if (size < elements.length) {
+            return;
+        }
+        Object[] grown = new Object[elements.length * 2];
+        for (int i = 0; i < size; i++) {
+            grown[i] = elements[(head + i) & (elements.length - 1)];
+        }
+        elements = grown;
+        head = 0;
+    }
+
+    /*
+     Iterates from the front (top of the stack, front of the queue) to the back.
+     */
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) elements[(head + index++) & (elements.length - 1)];
+            }
+        };
+    }
+}
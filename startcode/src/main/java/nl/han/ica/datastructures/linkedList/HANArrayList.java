@@ -0,0 +1,130 @@
+package nl.han.ica.datastructures.linkedList;
+
+import java.util.Arrays;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/*
+ * Array-backed implementation of the list operations of IHANLinkedList.
+ * Appending (addLast, or insert at the end) is amortised O(1) and get is O(1);
+ * operations at the front shift all elements and are O(n).
+ */
+public class HANArrayList<T> implements IHANLinkedList<T> {
+    private static final int INITIAL_CAPACITY = 10;
+
+    private Object[] elements;
+    private int size;
+    private int modCount;
+
+    public HANArrayList() {
+        this(INITIAL_CAPACITY);
+    }
+
+    public HANArrayList(int initialCapacity) {
+        this.elements = new Object[Math.max(initialCapacity, 1)];
+        this.size = 0;
+    }
+
+    @Override
+    public void addFirst(T value) {
+        insert(0, value);
+    }
+
+    @Override
+    public void addLast(T value) {
+        ensureCapacity(size + 1);
+        elements[size++] = value;
+        modCount++;
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(elements, 0, size, null);
+        size = 0;
+        modCount++;
+    }
+
+    @Override
+    public void insert(int index, T value) {
+        if (index < 0 || index > size) {
+            throw new IndexOutOfBoundsException("Index out of bounds: " + index);
+        }
+        ensureCapacity(size + 1);
+        System.arraycopy(elements, index, elements, index + 1, size - index);
+        elements[index] = value;
+        size++;
+        modCount++;
+    }
+
+    @Override
+    public void delete(int pos) {
+        if (pos < 0 || pos >= size) {
+            throw new IndexOutOfBoundsException("Position out of bounds: " + pos);
+        }
+        System.arraycopy(elements, pos + 1, elements, pos, size - pos - 1);
+        elements[--size] = null;
+        modCount++;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T get(int pos) {
+        if (pos < 0 || pos >= size) {
+            throw new IndexOutOfBoundsException("Position out of bounds: " + pos);
+        }
+        return (T) elements[pos];
+    }
+
+    @Override
+    public void removeFirst() {
+        if (size > 0) {
+            delete(0);
+        }
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public T getFirst() {
+        if (size == 0) {
+            throw new NoSuchElementException("List is empty");
+        }
+        return (T) elements[0];
+    }
+
+    @Override
+    public int getSize() {
+        return size;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity > elements.length) {
+            elements = Arrays.copyOf(elements, Math.max(capacity, elements.length * 2));
+        }
+    }
+
+    @Override
+    public Iterator<T> iterator() {
+        return new Iterator<T>() {
+            private int index = 0;
+            private final int expectedModCount = modCount;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public T next() {
+                if (modCount != expectedModCount) {
+                    throw new ConcurrentModificationException();
+                }
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return (T) elements[index++];
+            }
+        };
+    }
+}
@@ -5,6 +5,7 @@ import java.util.NoSuchElementException;
 
 public class HANLinkedList<T> implements IHANLinkedList<T> {
     private Node<T> head;
+    private Node<T> tail;
     private int size;
 
     private static class Node<T> {
@@ -19,6 +20,7 @@ public class HANLinkedList<T> implements IHANLinkedList<T> {
 
     public HANLinkedList() {
         this.head = null;
+        this.tail = null;
         this.size = 0;
     }
 
@@ -27,12 +29,28 @@ public class HANLinkedList<T> implements IHANLinkedList<T> {
         Node<T> newNode = new Node<>(value);
         newNode.next = head;
         head = newNode;
+        if (tail == null) {
+            tail = newNode;
+        }
+        size++;
+    }
+
+    @Override
+    public void addLast(T value) {
+        Node<T> newNode = new Node<>(value);
+        if (tail == null) {
+            head = newNode;
+        } else {
+            tail.next = newNode;
+        }
+        tail = newNode;
         size++;
     }
 
     @Override
     public void clear() {
         head = null;
+        tail = null;
         size = 0;
     }
 
@@ -44,6 +62,8 @@ public class HANLinkedList<T> implements IHANLinkedList<T> {
 
         if (index == 0) {
             addFirst(value);
+        } else if (index == size) {
+            addLast(value);
         } else {
             Node<T> newNode = new Node<>(value);
             Node<T> current = head;
@@ -70,6 +90,9 @@ public class HANLinkedList<T> implements IHANLinkedList<T> {
                 current = current.next;
             }
             current.next = current.next.next;
+            if (current.next == null) {
+                tail = current;
+            }
             size--;
         }
     }
@@ -91,6 +114,9 @@ public class HANLinkedList<T> implements IHANLinkedList<T> {
     public void removeFirst() {
         if (head != null) {
             head = head.next;
+            if (head == null) {
+                tail = null;
+            }
             size--;
         }
     }
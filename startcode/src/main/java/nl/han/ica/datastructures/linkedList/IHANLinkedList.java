@@ -2,6 +2,7 @@ package nl.han.ica.datastructures.linkedList;
 
 public interface IHANLinkedList<T> extends Iterable<T> {
     void addFirst(T value);
+    void addLast(T value);
     void clear();
     void insert(int index, T value);
     void delete(int pos);
@@ -22,7 +22,7 @@ public class HANQueue<T> implements IHANQueue<T> {
 
     @Override
     public void enqueue(T value) {
-        list.insert(list.getSize(), value);
+        list.addLast(value);
     }
 
     @Override
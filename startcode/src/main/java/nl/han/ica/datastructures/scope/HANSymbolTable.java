@@ -0,0 +1,102 @@
+package nl.han.ica.datastructures.scope;
+
+import nl.han.ica.datastructures.linkedList.HANArrayList;
+import nl.han.ica.datastructures.linkedList.IHANLinkedList;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * A flat symbol table: one hash table from key to the stack of its bindings,
+ * innermost binding on top. Resolving a key is O(1) regardless of nesting depth.
+ * Every scope remembers which keys were declared in it, so leaving a scope only
+ * pops the bindings of those keys. Entering a scope allocates nothing.
+ * Values may not be null.
+ */
+public class HANSymbolTable<K, V> implements IHANScopeChain<K, V> {
+    private static final int INITIAL_CAPACITY = 8;
+
+    private static class Binding<V> {
+        V value;
+        final int depth;
+        final Binding<V> shadowed;
+
+        Binding(V value, int depth, Binding<V> shadowed) {
+            this.value = value;
+            this.depth = depth;
+            this.shadowed = shadowed;
+        }
+    }
+
+    private final HashMap<K, Binding<V>> table;
+    //Keys in order of declaration; scopeStart[d] is the first index declared in scope d
+    private final IHANLinkedList<K> declared;
+    private int[] scopeStart;
+    private int depth;
+
+    public HANSymbolTable() {
+        this.table = new HashMap<>();
+        this.declared = new HANArrayList<>();
+        this.scopeStart = new int[INITIAL_CAPACITY];
+        this.depth = 0;
+    }
+
+    @Override
+    public void pushScope() {
+        if (depth == scopeStart.length) {
+            scopeStart = Arrays.copyOf(scopeStart, depth * 2);
+        }
+        scopeStart[depth++] = declared.getSize();
+    }
+
+    @Override
+    public void popScope() {
+        if (depth == 0) {
+            throw new IllegalStateException("No scope to pop");
+        }
+        depth--;
+        for (int i = declared.getSize() - 1; i >= scopeStart[depth]; i--) {
+            K key = declared.get(i);
+            declared.delete(i);
+            Binding<V> shadowed = table.get(key).shadowed;
+            if (shadowed == null) {
+                table.remove(key);
+            } else {
+                table.put(key, shadowed);
+            }
+        }
+    }
+
+    @Override
+    public void declare(K key, V value) {
+        if (depth == 0) {
+            throw new IllegalStateException("No scope to declare in");
+        }
+        if (value == null) {
+            throw new IllegalArgumentException("Value may not be null");
+        }
+        Binding<V> current = table.get(key);
+        if (current != null && current.depth == depth) {
+            current.value = value;
+        } else {
+            table.put(key, new Binding<>(value, depth, current));
+            declared.addLast(key);
+        }
+    }
+
+    @Override
+    public V resolve(K key) {
+        Binding<V> binding = table.get(key);
+        return binding != null ? binding.value : null;
+    }
+
+    @Override
+    public boolean isDeclared(K key) {
+        return table.containsKey(key);
+    }
+
+    @Override
+    public int getDepth() {
+        return depth;
+    }
+}
@@ -0,0 +1,15 @@
+package nl.han.ica.datastructures.scope;
+
+/*
+ * Nested scopes of bindings, where a declaration in an inner scope shadows one with the
+ * same key in the scopes around it. HANSymbolTable is the implementation Checker and
+ * Evaluator use by default; their constructors take any other one.
+ */
+public interface IHANScopeChain<K, V> {
+    void pushScope();
+    void popScope();
+    void declare(K key, V value);
+    V resolve(K key);
+    boolean isDeclared(K key);
+    int getDepth();
+}
@@ -1,39 +1,89 @@
 package nl.han.ica.icss;
 
 import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.flat.BinaryAST;
+import nl.han.ica.icss.ast.flat.FlatAST;
+import nl.han.ica.icss.ast.flat.FlatASTAdapter;
 import nl.han.ica.icss.checker.Checker;
+import nl.han.ica.icss.checker.FlatChecker;
+import nl.han.ica.icss.checker.LineIndex;
 import nl.han.ica.icss.checker.SemanticError;
+import nl.han.ica.icss.generator.FlatGenerator;
 import nl.han.ica.icss.generator.Generator;
-import nl.han.ica.icss.parser.ASTListener;
-import nl.han.ica.icss.parser.ICSSLexer;
-import nl.han.ica.icss.parser.ICSSParser;
+import nl.han.ica.icss.generator.SourceMap;
+import nl.han.ica.icss.parser.*;
 import nl.han.ica.icss.transforms.Evaluator;
+import nl.han.ica.icss.transforms.FlatEvaluator;
+import nl.han.ica.icss.transforms.PersistentEvaluator;
 import org.antlr.v4.runtime.*;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.PredictionMode;
 import org.antlr.v4.runtime.dfa.DFA;
 import org.antlr.v4.runtime.misc.ParseCancellationException;
 import org.antlr.v4.runtime.tree.ParseTree;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
 import org.antlr.v4.runtime.tree.ParseTreeWalker;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.BitSet;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
 
 public class Pipeline implements ANTLRErrorListener {
 
     private AST ast;
+    private FlatAST flatAST;
     private boolean parsed = false;
     private boolean checked = false;
     private boolean transformed = false;
     private List<String> errors;
+    //The source of the AST, its line starts are only indexed when an error needs a position
+    private String input;
+    private LineIndex lineIndex;
+
+    //Parse with fast SLL prediction first and only fall back to full LL when SLL bails
+    private boolean twoStageParsing = true;
+    private long parseCount = 0;
+    private long llFallbackCount = 0;
+    //Build the AST during parsing instead of from a parse tree
+    private boolean directASTConstruction = false;
+    //Keep the AST in the compact flat representation, getAST() converts it on demand
+    private boolean flatASTMode = false;
+    //Share equal literal, property name and selector nodes
+    private boolean interning = false;
+    private ASTInternTable sharedInternTable = null;
+    //Freeze the AST and transform it into a new AST that shares the unchanged subtrees
+    private boolean immutableAST = false;
+    //Generate CSS without whitespace, with merged stylerules
+    private boolean minifiedOutput = false;
+    //Fill a source map while generating
+    private boolean sourceMaps = false;
+    private SourceMap sourceMap = null;
+    private boolean parallelGeneration = false;
 
     public Pipeline() {
         errors = new ArrayList<>();
     }
 
     public AST getAST() {
+        if (ast == null && flatAST != null) {
+            ast = FlatASTAdapter.toAST(flatAST);
+        }
         return ast;
     }
+    public FlatAST getFlatAST() {
+        return flatAST;
+    }
     public List<String> getErrors() {
         return errors;
     }
@@ -46,6 +96,99 @@ public class Pipeline implements ANTLRErrorListener {
     public boolean isTransformed() {
         return transformed;
     }
+    public boolean isTwoStageParsing() {
+        return twoStageParsing;
+    }
+    public void setTwoStageParsing(boolean twoStageParsing) {
+        this.twoStageParsing = twoStageParsing;
+    }
+    public boolean isDirectASTConstruction() {
+        return directASTConstruction;
+    }
+    public void setDirectASTConstruction(boolean directASTConstruction) {
+        this.directASTConstruction = directASTConstruction;
+    }
+    public boolean isFlatASTMode() {
+        return flatASTMode;
+    }
+    /*
+     In flat mode the parser builds a FlatAST from parse events, like direct AST construction,
+     and check(), transform() and generate() work on it with the flat versions of the passes.
+     */
+    public void setFlatASTMode(boolean flatASTMode) {
+        this.flatASTMode = flatASTMode;
+    }
+    public boolean isImmutableAST() {
+        return immutableAST;
+    }
+    /*
+     In immutable mode transform() leaves the checked AST as it is and getAST() returns a
+     frozen AST. A flat AST is never changed by transform(), so this only affects AST objects.
+     The checker cannot set errors on the frozen AST, so check() cannot run after transform().
+     */
+    public void setImmutableAST(boolean immutableAST) {
+        this.immutableAST = immutableAST;
+    }
+    public boolean isMinifiedOutput() {
+        return minifiedOutput;
+    }
+    public void setMinifiedOutput(boolean minifiedOutput) {
+        this.minifiedOutput = minifiedOutput;
+    }
+    public boolean isSourceMaps() {
+        return sourceMaps;
+    }
+    /*
+     With source maps generate() also fills the map that getSourceMap() returns. Parsing then
+     does not intern selectors, so every selector keeps its own position in the source.
+     */
+    public void setSourceMaps(boolean sourceMaps) {
+        this.sourceMaps = sourceMaps;
+    }
+    public boolean isParallelGeneration() {
+        return parallelGeneration;
+    }
+    /*
+     In parallel generation large stylesheets are written in chunks of stylerules on the common
+     fork-join pool. The CSS is the same; with source maps or minified output it is sequential.
+     */
+    public void setParallelGeneration(boolean parallelGeneration) {
+        this.parallelGeneration = parallelGeneration;
+    }
+    /*
+     The source map of the last generated CSS, null without source maps or without a source.
+     */
+    public SourceMap getSourceMap() {
+        return sourceMap;
+    }
+    public boolean isInterning() {
+        return interning;
+    }
+    /*
+     With interning equal literals, property names and selectors are parsed into one frozen
+     node. That saves memory on large stylesheets, but those nodes have no source range, so
+     errors on them have no line:column. Off by default.
+     */
+    public void setInterning(boolean interning) {
+        this.interning = interning;
+    }
+    /*
+     Interns into the given table instead of a new table per parse, so nodes are also
+     shared between compilations. Only applies when interning is on.
+     */
+    public void setSharedInternTable(ASTInternTable sharedInternTable) {
+        this.sharedInternTable = sharedInternTable;
+    }
+    public long getParseCount() {
+        return parseCount;
+    }
+    /*
+     Number of parses where SLL prediction bailed out and the input was re-parsed with full LL.
+     If this stays close to getParseCount() the two-stage mode does not pay off.
+     */
+    public long getLLFallbackCount() {
+        return llFallbackCount;
+    }
 
     public void parseString(String input) {
 
@@ -55,43 +198,154 @@ public class Pipeline implements ANTLRErrorListener {
         lexer.removeErrorListeners();
         lexer.addErrorListener(this);
         errors.clear();
+        ast = null;
+        flatAST = null;
+        this.input = input;
+        lineIndex = null;
         try {
             CommonTokenStream tokens = new CommonTokenStream(lexer);
 
             //Parse (with Antlr's generated parser)
             ICSSParser parser = new ICSSParser(tokens);
             parser.removeErrorListeners();
-            parser.addErrorListener(this);
 
-            ParseTree parseTree = parser.stylesheet();
+            if (flatASTMode) {
+                this.flatAST = parse(parser, tokens, this::buildFlatAST);
+            } else {
+                this.ast = parse(parser, tokens, this::buildAST);
+            }
+
+        } catch (RecognitionException e) {
+            setEmptyAST();
+            errors.add(e.getMessage());
+
+        } catch (ParseCancellationException e) {
+            setEmptyAST();
+            if (e.getCause() instanceof RecognitionException
+                    && ((RecognitionException) e.getCause()).getOffendingToken() != null) {
+                Token token = ((RecognitionException) e.getCause()).getOffendingToken();
+                errors.add("Syntax error at " + token.getLine() + ":" + (token.getCharPositionInLine() + 1));
+            } else {
+                errors.add("Syntax error");
+            }
+        }
+        parsed = errors.isEmpty();
+        checked = transformed = false;
+    }
+    private void setEmptyAST() {
+        if (flatASTMode) {
+            this.flatAST = FlatAST.empty();
+        } else {
+            this.ast = new AST();
+        }
+    }
+
+    private <T> T parse(ICSSParser parser, CommonTokenStream tokens, Function<ICSSParser, T> build) {
+        return twoStageParsing ? parseTwoStage(parser, tokens, build) : parseLL(parser, build);
+    }
+
+    private <T> T parseTwoStage(ICSSParser parser, CommonTokenStream tokens, Function<ICSSParser, T> build) {
+        parseCount++;
+
+        //Stage 1: SLL prediction, bail out on the first syntax error without reporting it
+        parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+        parser.setErrorHandler(new BailErrorStrategy());
+        try {
+            return build.apply(parser);
+        } catch (ParseCancellationException e) {
+            llFallbackCount++;
+        }
+
+        //Stage 2: rewind and re-parse with full LL and normal error reporting
+        tokens.seek(0);
+        parser.reset();
+        parser.setErrorHandler(new DefaultErrorStrategy());
+        parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+        parser.addErrorListener(this);
+        return build.apply(parser);
+    }
 
+    private <T> T parseLL(ICSSParser parser, Function<ICSSParser, T> build) {
+        parseCount++;
+        parser.addErrorListener(this);
+        return build.apply(parser);
+    }
+
+    private AST buildAST(ICSSParser parser) {
+        if (!directASTConstruction) {
             //Extract AST from the Antlr parse tree
-            ASTListener listener = new ASTListener();
+            ParseTree parseTree = parser.stylesheet();
+            ASTListener listener = new ASTListener(createNodeFactory());
             ParseTreeWalker walker = new ParseTreeWalker();
             walker.walk(listener, parseTree);
+            return listener.getAST();
+        }
 
-            this.ast = listener.getAST();
+        //Build the AST from parse events, the parse tree is never materialised
+        DirectASTBuilder builder = new DirectASTBuilder(createNodeFactory());
+        return runParseListener(parser, builder) ? builder.getAST() : new AST();
+    }
 
-        } catch (RecognitionException e) {
-            this.ast = new AST();
-            errors.add(e.getMessage());
+    private ASTNodeFactory createNodeFactory() {
+        if (!interning || sourceMaps) {
+            return new ASTNodeFactory();
+        }
+        return new ASTNodeFactory(sharedInternTable != null ? sharedInternTable : new ASTInternTable());
+    }
+
+    private FlatAST buildFlatAST(ICSSParser parser) {
+        FlatASTBuilder builder = new FlatASTBuilder();
+        return runParseListener(parser, builder) ? builder.getFlatAST() : FlatAST.empty();
+    }
 
+    /*
+     Runs the parser with only the given parse listener attached. Returns false if a
+     reported syntax error left the listener without a usable result.
+     */
+    private boolean runParseListener(ICSSParser parser, ParseTreeListener builder) {
+        parser.setBuildParseTree(false);
+        parser.removeParseListeners();
+        parser.addParseListener(builder);
+        try {
+            parser.stylesheet();
         } catch (ParseCancellationException e) {
-            this.ast = new AST();
-            errors.add("Syntax error");
+            throw e;
+        } catch (RuntimeException e) {
+            //A syntax error leaves the builder with incomplete nodes, which can fail
+            //in the exit events that still fire while the parser unwinds
+            if (parser.getErrorHandler() instanceof BailErrorStrategy) {
+                throw new ParseCancellationException(e);
+            }
+            if (errors.isEmpty()) {
+                throw e;
+            }
+            return false;
         }
-        parsed = errors.isEmpty();
-        checked = transformed = false;
+        return true;
     }
+
     public boolean check() {
-            if(ast == null)
+            if(ast == null && flatAST == null)
                 return false;
+            if (flatAST == null && ast.root.isFrozen()) {
+                throw new IllegalStateException("The AST is frozen, for example by transform() in immutable mode, and cannot be checked");
+            }
 
-           (new Checker()).check(this.ast);
-
-            ArrayList<SemanticError> errors = this.ast.getErrors();
+            ArrayList<SemanticError> errors;
+            if (flatAST != null) {
+                (new FlatChecker()).check(flatAST);
+                errors = flatAST.getErrors();
+                ast = null;
+            } else {
+                (new Checker()).check(this.ast);
+                errors = this.ast.getErrors();
+            }
             if (!errors.isEmpty()) {
+                LineIndex lines = getLineIndex();
                 for (SemanticError e : errors) {
+                    if (lines != null) {
+                        e.resolvePosition(lines);
+                    }
                     this.errors.add(e.toString());
                 }
             }
@@ -101,24 +355,129 @@ public class Pipeline implements ANTLRErrorListener {
             return errors.isEmpty();
     }
 
+    //Null if the AST was loaded from a file without line starts
+    private LineIndex getLineIndex() {
+        if (lineIndex == null && input != null) {
+            lineIndex = new LineIndex(input);
+        }
+        return lineIndex;
+    }
+
     public void clearErrors(){
         errors.clear();
     }
 
     public void transform() {
-        if(ast == null)
+        if(ast == null && flatAST == null)
             return;
 
-        (new Evaluator()).apply(ast);
-
+        //The evaluators keep the errors that are on the AST already, those have been reported
+        Set<SemanticError> reported = Collections.newSetFromMap(new IdentityHashMap<>());
+        reported.addAll(flatAST != null ? flatAST.getErrors() : ast.getErrors());
+        if (flatAST != null) {
+            flatAST = (new FlatEvaluator()).apply(flatAST);
+            ast = null;
+        } else if (immutableAST) {
+            ast = (new PersistentEvaluator()).apply(ast);
+        } else {
+            (new Evaluator()).apply(ast);
+        }
+        LineIndex lines = getLineIndex();
+        for (SemanticError e : flatAST != null ? flatAST.getErrors() : ast.getErrors()) {
+            if (!reported.contains(e)) {
+                if (lines != null) {
+                    e.resolvePosition(lines);
+                }
+                errors.add(e.toString());
+            }
+        }
 
         transformed = errors.isEmpty();
     }
     public String generate() {
+        if (sourceMaps) {
+            StringBuilder css = new StringBuilder();
+            try {
+                generate(css);
+            } catch (IOException e) {
+                //A StringBuilder does not throw
+                throw new IllegalStateException(e);
+            }
+            return css.toString();
+        }
+        sourceMap = null;
+        if (flatAST != null) {
+            FlatGenerator generator = new FlatGenerator();
+            generator.setMinified(minifiedOutput);
+            generator.setParallel(parallelGeneration);
+            return generator.generate(flatAST);
+        }
         Generator generator = new Generator();
+        generator.setMinified(minifiedOutput);
+        generator.setParallel(parallelGeneration);
         return generator.generate(ast);
     }
 
+    /*
+     Writes the CSS to the stream as UTF-8 while it is generated, without holding all of it.
+     The stream is flushed, but not closed.
+     */
+    public void generate(OutputStream out) throws IOException {
+        Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+        generate(writer);
+        writer.flush();
+    }
+
+    private void generate(Appendable out) throws IOException {
+        sourceMap = sourceMaps && getLineIndex() != null ? new SourceMap(getLineIndex()) : null;
+        if (flatAST != null) {
+            FlatGenerator generator = new FlatGenerator();
+            generator.setMinified(minifiedOutput);
+            generator.setParallel(parallelGeneration);
+            generator.generate(flatAST, out, sourceMap);
+        } else {
+            Generator generator = new Generator();
+            generator.setMinified(minifiedOutput);
+            generator.setParallel(parallelGeneration);
+            generator.generate(ast, out, sourceMap);
+        }
+    }
+
+    /*
+     Writes the AST in the binary format of BinaryAST, together with how far it got
+     through the pipeline and where the lines of the source start, so loadAST() can continue
+     without parsing the source again.
+     */
+    public void saveAST(Path file) throws IOException {
+        if (ast == null && flatAST == null) {
+            throw new IllegalStateException("There is no AST to save");
+        }
+        FlatAST flat = flatAST != null ? flatAST : FlatASTAdapter.fromAST(ast);
+        int flags = (checked ? BinaryAST.CHECKED : 0) | (transformed ? BinaryAST.TRANSFORMED : 0);
+        try (OutputStream out = Files.newOutputStream(file)) {
+            BinaryAST.write(flat, flags, getLineIndex(), out);
+        }
+    }
+
+    /*
+     Continues with an AST written by saveAST(). The AST is kept flat until getAST() is
+     called, and checked and transformed as a flat AST. Its errors are reported again.
+     */
+    public void loadAST(Path file) throws IOException {
+        BinaryAST binary = BinaryAST.read(file);
+        errors.clear();
+        ast = null;
+        flatAST = binary.getAST();
+        input = null;
+        lineIndex = binary.getLineIndex();
+        for (SemanticError e : flatAST.getErrors()) {
+            errors.add(e.toString());
+        }
+        parsed = true;
+        checked = binary.isChecked();
+        transformed = binary.isTransformed();
+    }
+
     //Catch ANTLR errors
     @Override
     public void reportAmbiguity(Parser arg0, DFA arg1, int arg2, int arg3,
@@ -138,6 +497,7 @@ public class Pipeline implements ANTLRErrorListener {
     @Override
     public void syntaxError(Recognizer<?, ?> arg0, Object arg1, int arg2,
                             int arg3, String arg4, RecognitionException arg5) {
-        errors.add("Syntax error: " + arg4);
+        //ANTLR counts columns from 0, the semantic errors from 1
+        errors.add("Syntax error at " + arg2 + ":" + (arg3 + 1) + ": " + arg4);
     }
 }
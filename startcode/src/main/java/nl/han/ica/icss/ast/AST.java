@@ -19,6 +19,13 @@ public class AST {
 	public void setRoot(Stylesheet stylesheet) {
 		root = stylesheet;
 	}
+	/*
+	 Makes the whole tree immutable, see ASTNode.freeze().
+	 */
+	public AST freeze() {
+		root.freeze();
+		return this;
+	}
     public ArrayList<SemanticError> getErrors() {
 	    ArrayList<SemanticError> errors = new ArrayList<>();
         collectErrors(errors,root);
@@ -28,8 +35,8 @@ public class AST {
 	    if(node.hasError()) {
 	        errors.add(node.getError());
         }
-        for(ASTNode child: node.getChildren()) {
-	        collectErrors(errors,child);
+        for(int i = 0; i < node.getChildCount(); i++) {
+	        collectErrors(errors,node.getChild(i));
         }
     }
 	@Override
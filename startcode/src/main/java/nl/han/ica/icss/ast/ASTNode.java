@@ -3,11 +3,29 @@ package nl.han.ica.icss.ast;
 import nl.han.ica.icss.checker.SemanticError;
 
 import java.util.ArrayList;
-import java.util.List;
 
 public class ASTNode {
 
+    /*
+     Only frozen nodes cache their structural hash. A node that is not frozen can still be
+     changed by writing its public fields, which no cache would notice, so its hash is
+     computed from its subtree on every call. Freezing computes the hash of every frozen
+     node once, bottom up, and equals() rejects two frozen nodes with different hashes
+     without walking their subtrees.
+
+     There is no invalidation for nodes that are not frozen. The default Pipeline, Checker
+     and Evaluator work on such nodes, so for them hashCode() and equals() walk the whole
+     subtree. Cached hashes, and deduplication through ASTInternTable, need freeze(): with
+     interning on, in immutable mode (PersistentEvaluator) and in ThemeGenerator.
+     */
     private SemanticError error = null;
+    private boolean frozen = false;
+    //Structural hash, only set when frozen
+    private int frozenHash = 0;
+    //Start offset in the upper 32 bits and stop offset in the lower, NO_SOURCE_RANGE when unknown
+    private long sourceRange = NO_SOURCE_RANGE;
+
+    private static final long NO_SOURCE_RANGE = -1L;
 
     /*
      This method is used in the GUI to create an appropriate label
@@ -17,12 +35,36 @@ public class ASTNode {
         return "ASTNode";
     }
 
+    /*
+     Calls the method of the visitor for the class of this node. Every node class
+     overrides this, so a pass dispatches with one virtual call instead of a chain
+     of instanceof checks.
+     */
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitNode(this);
+    }
+
     /*
      Different AST nodes use different attributes to store their children.
-     This method provides a unified interface.
+     This method provides a unified interface. It builds a new list on every call,
+     compiler passes should use getChildCount() and getChild() instead.
      */
     public ArrayList<ASTNode> getChildren() {
-        return new ArrayList<>();
+        int count = getChildCount();
+        ArrayList<ASTNode> children = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            children.add(getChild(i));
+        }
+        return children;
+    }
+    /*
+     Allocation-free access to the children, in the same order as getChildren().
+     */
+    public int getChildCount() {
+        return 0;
+    }
+    public ASTNode getChild(int index) {
+        throw new IndexOutOfBoundsException("Child index out of bounds: " + index);
     }
     /*
     By implementing this method in a subclass you can easily create AST nodes
@@ -31,6 +73,39 @@ public class ASTNode {
     public ASTNode addChild(ASTNode child) {
             return this;
     }
+    /*
+     Makes this node and everything below it immutable: addChild(), removeChild() and
+     setError() throw an UnsupportedOperationException from now on. The public fields and
+     the lists in them can still be written, so beyond these methods a frozen node is only
+     immutable by convention. Code that keeps to it can read a frozen AST from many threads
+     at once, and transforms that copy the nodes they change, like PersistentEvaluator,
+     share its unchanged subtrees.
+     */
+    public ASTNode freeze() {
+        if (!isFrozen()) {
+            int count = getChildCount();
+            for (int i = 0; i < count; i++) {
+                ASTNode child = getChild(i);
+                if (child != null) {
+                    child.freeze();
+                }
+            }
+            frozenHash = computeHash();
+            frozen = true;
+        }
+        return this;
+    }
+    public boolean isFrozen() {
+        return frozen;
+    }
+    /*
+     Called by the methods that change a node.
+     */
+    protected void checkNotFrozen() {
+        if (isFrozen()) {
+            throw new UnsupportedOperationException(getNodeLabel() + " is frozen");
+        }
+    }
     /*
     * By implementing this method you can easily make transformations that prune the AST.
     */
@@ -38,12 +113,36 @@ public class ASTNode {
         return this;
     }
 
+    /*
+     Character offsets of the first and last character of this node in the source, as
+     the lexer counts them. Line and column are only computed when an error is reported.
+     Interned nodes are shared between places in the source, so they have no range.
+     */
+    public void setSourceRange(int start, int stop) {
+        sourceRange = ((long) start << 32) | (stop & 0xFFFFFFFFL);
+    }
+    public boolean hasSourceRange() {
+        return sourceRange != NO_SOURCE_RANGE;
+    }
+    //-1 when unknown
+    public int getSourceStart() {
+        return hasSourceRange() ? (int) (sourceRange >> 32) : -1;
+    }
+    public int getSourceStop() {
+        return hasSourceRange() ? (int) sourceRange : -1;
+    }
+
     public SemanticError getError() {
         return this.error;
     }
 
     public void setError(String description) {
-        this.error = new SemanticError(description);
+        checkNotFrozen();
+        this.error = new SemanticError(description, getSourceStart());
+    }
+    public void setError(SemanticError error) {
+        checkNotFrozen();
+        this.error = error;
     }
 
     public boolean hasError() {
@@ -60,26 +159,65 @@ public class ASTNode {
 		builder.append("[");
 		builder.append(getNodeLabel());	
 		builder.append("|");
-		for(ASTNode child : getChildren()) {
-			child.toString(builder);
-		}	
+		for(int i = 0; i < getChildCount(); i++) {
+			getChild(i).toString(builder);
+		}
 		builder.append("]");
 	}
 
+	/*
+	 Structural equality: the same class, the same value and equal children. Errors are
+	 not compared. Frozen nodes are unequal when their cached hashes differ; nodes that
+	 are not frozen are always compared child by child.
+	 */
 	@Override
     public boolean equals(Object o) {
-        if(! (o instanceof ASTNode))
+        if (this == o)
+            return true;
+        if (o == null || getClass() != o.getClass())
+            return false;
+        ASTNode other = (ASTNode) o;
+        if (frozen && other.frozen && frozenHash != other.frozenHash)
+            return false;
+        if (!valueEquals(other))
             return false;
         //Compare all children
-        List<ASTNode> thisChildren = this.getChildren();
-        List<ASTNode> otherChildren = ((ASTNode) o).getChildren();
-        if(otherChildren.size() != thisChildren.size())
+        int count = this.getChildCount();
+        if(other.getChildCount() != count)
             return false;
-        for(int i = 0; i < thisChildren.size(); i++ ) {
-            if(!thisChildren.get(i).equals(otherChildren.get(i))) {
+        for(int i = 0; i < count; i++ ) {
+            ASTNode child = this.getChild(i);
+            if(child == null ? other.getChild(i) != null : !child.equals(other.getChild(i))) {
                 return false;
             }
         }
         return true;
     }
+
+	//Walks the subtree unless the node is frozen
+	@Override
+	public final int hashCode() {
+		return frozen ? frozenHash : computeHash();
+	}
+
+	private int computeHash() {
+		int hash = 31 * getClass().getName().hashCode() + valueHashCode();
+		int count = getChildCount();
+		for (int i = 0; i < count; i++) {
+			ASTNode child = getChild(i);
+			hash = 31 * hash + (child == null ? 0 : child.hashCode());
+		}
+		return hash;
+	}
+
+	/*
+	 Nodes that hold a value besides their children, like literals and selectors, compare
+	 and hash it here. The other node always has the same class.
+	 */
+	protected boolean valueEquals(ASTNode other) {
+		return true;
+	}
+	protected int valueHashCode() {
+		return 0;
+	}
 }
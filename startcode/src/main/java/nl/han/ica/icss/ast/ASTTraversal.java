@@ -0,0 +1,37 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.datastructures.queue.HANQueue;
+import nl.han.ica.datastructures.queue.IHANQueue;
+
+import java.util.function.ObjIntConsumer;
+
+/*
+ * Traversals over an AST that are not tied to a particular pass.
+ */
+public class ASTTraversal {
+
+    private ASTTraversal() { }
+
+    /*
+     Visits all nodes in level order: the root first, then all its children,
+     then all grandchildren, and so on. The visitor also receives the level
+     of the node, the root being level 0.
+     */
+    public static void breadthFirst(ASTNode root, ObjIntConsumer<ASTNode> visitor) {
+        IHANQueue<ASTNode> queue = new HANQueue<>();
+        queue.enqueue(root);
+
+        int level = 0;
+        while (!queue.isEmpty()) {
+            int nodesInLevel = queue.getSize();
+            for (int i = 0; i < nodesInLevel; i++) {
+                ASTNode node = queue.dequeue();
+                visitor.accept(node, level);
+                for (int child = 0; child < node.getChildCount(); child++) {
+                    queue.enqueue(node.getChild(child));
+                }
+            }
+            level++;
+        }
+    }
+}
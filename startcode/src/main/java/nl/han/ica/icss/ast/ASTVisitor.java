@@ -0,0 +1,97 @@
+package nl.han.ica.icss.ast;
+
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+/*
+ * Visitor over the AST node classes, dispatched with ASTNode.accept().
+ * Every concrete node has its own method. By default these fall through to the
+ * method of the abstract superclass (visitPixelLiteral to visitLiteral to
+ * visitExpression to visitNode), so a pass only implements visitNode and the
+ * node kinds it is interested in.
+ */
+public interface ASTVisitor<R> {
+
+    R visitNode(ASTNode node);
+
+    default R visitStylesheet(Stylesheet node) {
+        return visitNode(node);
+    }
+    default R visitStylerule(Stylerule node) {
+        return visitNode(node);
+    }
+    default R visitDeclaration(Declaration node) {
+        return visitNode(node);
+    }
+    default R visitPropertyName(PropertyName node) {
+        return visitNode(node);
+    }
+    default R visitVariableAssignment(VariableAssignment node) {
+        return visitNode(node);
+    }
+    default R visitIfClause(IfClause node) {
+        return visitNode(node);
+    }
+    default R visitElseClause(ElseClause node) {
+        return visitNode(node);
+    }
+
+    //Expressions
+    default R visitExpression(Expression node) {
+        return visitNode(node);
+    }
+    default R visitVariableReference(VariableReference node) {
+        return visitExpression(node);
+    }
+
+    default R visitOperation(Operation node) {
+        return visitExpression(node);
+    }
+    default R visitAddOperation(AddOperation node) {
+        return visitOperation(node);
+    }
+    default R visitSubtractOperation(SubtractOperation node) {
+        return visitOperation(node);
+    }
+    default R visitMultiplyOperation(MultiplyOperation node) {
+        return visitOperation(node);
+    }
+
+    default R visitLiteral(Literal node) {
+        return visitExpression(node);
+    }
+    default R visitBoolLiteral(BoolLiteral node) {
+        return visitLiteral(node);
+    }
+    default R visitColorLiteral(ColorLiteral node) {
+        return visitLiteral(node);
+    }
+    default R visitPercentageLiteral(PercentageLiteral node) {
+        return visitLiteral(node);
+    }
+    default R visitPixelLiteral(PixelLiteral node) {
+        return visitLiteral(node);
+    }
+    default R visitScalarLiteral(ScalarLiteral node) {
+        return visitLiteral(node);
+    }
+
+    //Selectors
+    default R visitSelector(Selector node) {
+        return visitNode(node);
+    }
+    default R visitClassSelector(ClassSelector node) {
+        return visitSelector(node);
+    }
+    default R visitIdSelector(IdSelector node) {
+        return visitSelector(node);
+    }
+    default R visitTagSelector(TagSelector node) {
+        return visitSelector(node);
+    }
+}
@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class ElseClause extends ASTNode{
 
@@ -19,34 +18,24 @@ public class ElseClause extends ASTNode{
         return "Else_Clause";
     }
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        children.addAll(body);
-
-        return children;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitElseClause(this);
     }
-
     @Override
-    public ASTNode addChild(ASTNode child) {
-
-        body.add(child);
-
-        return this;
+    public int getChildCount() {
+        return body.size();
     }
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ElseClause ElseClause = (ElseClause) o;
-        return Objects.equals(body, ElseClause.body);
+    public ASTNode getChild(int index) {
+        return body.get(index);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(body);
-    }
-
+    public ASTNode addChild(ASTNode child) {
+        checkNotFrozen();
 
+        body.add(child);
 
+        return this;
+    }
 }
@@ -1,24 +1,27 @@
 package nl.han.ica.icss.ast;
 
-import java.util.ArrayList;
-
 public abstract class Operation extends Expression {
 
     public Expression lhs;
     public Expression rhs;
 
     @Override
-    public ArrayList<ASTNode> getChildren() {
-        ArrayList<ASTNode> children = new ArrayList<>();
-        if(lhs != null)
-            children.add(lhs);
-        if(rhs != null)
-            children.add(rhs);
-        return children;
+    public int getChildCount() {
+        return (lhs != null ? 1 : 0) + (rhs != null ? 1 : 0);
+    }
+
+    @Override
+    public ASTNode getChild(int index) {
+        if(index == 0 && lhs != null)
+            return lhs;
+        if(index == getChildCount() - 1 && rhs != null)
+            return rhs;
+        return super.getChild(index);
     }
 
     @Override
     public ASTNode addChild(ASTNode child) {
+        checkNotFrozen();
         if(lhs == null) {
             lhs = (Expression) child;
         } else if(rhs == null) {
@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast;
 
+import java.util.Objects;
+
 public class PropertyName extends ASTNode {
 
     public String name;
@@ -17,4 +19,16 @@ public class PropertyName extends ASTNode {
     public String getNodeLabel() {
         return "Property: (" + name + ")";
     }
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitPropertyName(this);
+    }
+    @Override
+    protected boolean valueEquals(ASTNode other) {
+        return Objects.equals(name, ((PropertyName) other).name);
+    }
+    @Override
+    protected int valueHashCode() {
+        return Objects.hashCode(name);
+    }
 }
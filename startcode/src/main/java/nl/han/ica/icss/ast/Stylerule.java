@@ -1,7 +1,6 @@
 package nl.han.ica.icss.ast;
 
 import java.util.ArrayList;
-import java.util.Objects;
 
 public class Stylerule extends ASTNode {
 	
@@ -22,16 +21,19 @@ public class Stylerule extends ASTNode {
 		return "Stylerule";
 	}
 	@Override
-	public ArrayList<ASTNode> getChildren() {
-		ArrayList<ASTNode> children = new ArrayList<>();
-		children.addAll(selectors);
-		children.addAll(body);
-
-		return children;
+	public int getChildCount() {
+		return selectors.size() + body.size();
+	}
+	@Override
+	public ASTNode getChild(int index) {
+		if(index < selectors.size())
+			return selectors.get(index);
+		return body.get(index - selectors.size());
 	}
 
     @Override
     public ASTNode addChild(ASTNode child) {
+		checkNotFrozen();
 		if(child instanceof Selector)
 			selectors.add((Selector) child);
 		else
@@ -39,18 +41,8 @@ public class Stylerule extends ASTNode {
 
 		return this;
     }
-	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		Stylerule stylerule = (Stylerule) o;
-		return Objects.equals(selectors, stylerule.selectors) &&
-				Objects.equals(body, stylerule.body);
-	}
-
-	@Override
-	public int hashCode() {
-		return Objects.hash(selectors, body);
-	}
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitStylerule(this);
+    }
 }
@@ -1,8 +1,5 @@
 package nl.han.ica.icss.ast;
 
-import java.util.ArrayList;
-import java.util.Objects;
-
 /**
  * An assignment binds a expression to an identifier.
  *
@@ -17,8 +14,14 @@ public class VariableAssignment extends ASTNode {
 		return "VariableAssignment (" + name.name + ")";
 	}
 
+	@Override
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitVariableAssignment(this);
+	}
+
 	@Override
 	public ASTNode addChild(ASTNode child) {
+		checkNotFrozen();
 		if(name == null) {
 			name = (VariableReference) child;
 		} else if(expression == null) {
@@ -29,28 +32,15 @@ public class VariableAssignment extends ASTNode {
 	}
 
 	@Override
-	public ArrayList<ASTNode> getChildren() {
-
-		ArrayList<ASTNode> children = new ArrayList<>();
-		if(name != null)
-			children.add(name);
-		if(expression != null)
-			children.add(expression);
-		return children;
+	public int getChildCount() {
+		return (name != null ? 1 : 0) + (expression != null ? 1 : 0);
 	}
-
-	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		VariableAssignment that = (VariableAssignment) o;
-		return Objects.equals(name, that.name) &&
-				Objects.equals(expression, that.expression);
-	}
-
 	@Override
-	public int hashCode() {
-		return Objects.hash(name, expression);
+	public ASTNode getChild(int index) {
+		if(index == 0 && name != null)
+			return name;
+		if(index == getChildCount() - 1 && expression != null)
+			return expression;
+		return super.getChild(index);
 	}
 }
@@ -17,17 +17,16 @@ public class VariableReference extends Expression {
 	}
 
 	@Override
-	public boolean equals(Object o) {
-		if (this == o) return true;
-		if (o == null || getClass() != o.getClass()) return false;
-		if (!super.equals(o)) return false;
-		VariableReference that = (VariableReference) o;
-		return Objects.equals(name, that.name);
+	public <R> R accept(ASTVisitor<R> visitor) {
+		return visitor.visitVariableReference(this);
 	}
 
 	@Override
-	public int hashCode() {
-
-		return Objects.hash(name);
+	protected boolean valueEquals(ASTNode other) {
+		return Objects.equals(name, ((VariableReference) other).name);
+	}
+	@Override
+	protected int valueHashCode() {
+		return Objects.hashCode(name);
 	}
 }
@@ -0,0 +1,284 @@
+package nl.han.ica.icss.ast.flat;
+
+import nl.han.ica.icss.checker.LineIndex;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import static nl.han.ica.icss.ast.flat.FlatAST.*;
+
+/*
+ * Binary format of a FlatAST, to store a parsed, checked or transformed AST and read it back
+ * without lexing and parsing the stylesheet again. All numbers are varints, 7 bits per byte
+ * with the lowest bits first, and numbers that can be negative are zigzag encoded:
+ *
+ *   "ICSB", version, flags (CHECKED, TRANSFORMED)
+ *   string count, per string: number of UTF-8 bytes, bytes
+ *   node count, per node in preorder: kind, subtree size, payload,
+ *     source start minus the source start of the previous node, source stop minus source start
+ *   error count, per error: node, description, offset, line, column
+ *   line count, per line: start minus the start of the previous line, or 0 if not known
+ *
+ * The line starts let errors found after loading still be reported with a line and column.
+ *
+ * Reading fills the arrays of a FlatAST straight from the buffer, no node objects are
+ * created. The ASTNode classes are only built if the AST is asked for, see Pipeline.getAST().
+ */
+public class BinaryAST {
+
+    public static final int VERSION = 3;
+    public static final int CHECKED = 1;
+    public static final int TRANSFORMED = 2;
+
+    private static final byte[] MAGIC = {'I', 'C', 'S', 'B'};
+
+    private final FlatAST ast;
+    private final int flags;
+    private final LineIndex lineIndex;
+
+    private BinaryAST(FlatAST ast, int flags, LineIndex lineIndex) {
+        this.ast = ast;
+        this.flags = flags;
+        this.lineIndex = lineIndex;
+    }
+
+    public FlatAST getAST() {
+        return ast;
+    }
+    //Null if the file was written without one
+    public LineIndex getLineIndex() {
+        return lineIndex;
+    }
+    public boolean isChecked() {
+        return (flags & CHECKED) != 0;
+    }
+    public boolean isTransformed() {
+        return (flags & TRANSFORMED) != 0;
+    }
+
+    public static void write(FlatAST ast, int flags, OutputStream out) throws IOException {
+        write(ast, flags, null, out);
+    }
+
+    public static void write(FlatAST ast, int flags, LineIndex lineIndex, OutputStream out) throws IOException {
+        Encoder encoder = new Encoder(16 + ast.size() * 4);
+        encoder.writeBytes(MAGIC);
+        encoder.writeVarint(VERSION);
+        encoder.writeVarint(flags);
+
+        String[] strings = ast.getStrings();
+        encoder.writeVarint(strings.length);
+        for (String string : strings) {
+            encoder.writeString(string);
+        }
+
+        encoder.writeVarint(ast.size());
+        int previousStart = 0;
+        for (int node = 0; node < ast.size(); node++) {
+            encoder.writeVarint(ast.getKind(node));
+            encoder.writeVarint(ast.getEnd(node) - node);
+            encoder.writeSignedVarint(ast.getValue(node));
+            encoder.writeSignedVarint(ast.getSourceStart(node) - previousStart);
+            encoder.writeSignedVarint(ast.getSourceStop(node) - ast.getSourceStart(node));
+            previousStart = ast.getSourceStart(node);
+        }
+
+        encoder.writeVarint(ast.getErrorCount());
+        for (int node = 0; node < ast.size(); node++) {
+            SemanticError error = ast.getError(node);
+            if (error != null) {
+                encoder.writeVarint(node);
+                encoder.writeString(error.description);
+                encoder.writeSignedVarint(error.offset);
+                encoder.writeVarint(error.line);
+                encoder.writeVarint(error.column);
+            }
+        }
+
+        int lineCount = lineIndex != null ? lineIndex.getLineCount() : 0;
+        encoder.writeVarint(lineCount);
+        for (int line = 1; line <= lineCount; line++) {
+            encoder.writeVarint(lineIndex.getLineStart(line) - (line > 1 ? lineIndex.getLineStart(line - 1) : 0));
+        }
+        out.write(encoder.bytes, 0, encoder.size);
+    }
+
+    /*
+     Reads a file through a memory mapping, the file is not copied to the heap first.
+     */
+    public static BinaryAST read(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public static BinaryAST read(ByteBuffer buffer) throws IOException {
+        try {
+            return new Decoder(buffer).readAST();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated binary AST");
+        }
+    }
+
+    private static class Encoder {
+        private byte[] bytes;
+        private int size = 0;
+
+        Encoder(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        void writeBytes(byte[] data) {
+            ensureCapacity(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+        void writeVarint(int value) {
+            ensureCapacity(5);
+            while ((value & ~0x7F) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+        void writeSignedVarint(int value) {
+            writeVarint((value << 1) ^ (value >> 31));
+        }
+        void writeString(String string) {
+            byte[] utf8 = string.getBytes(StandardCharsets.UTF_8);
+            writeVarint(utf8.length);
+            writeBytes(utf8);
+        }
+        private void ensureCapacity(int extra) {
+            if (size + extra > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + extra));
+            }
+        }
+    }
+
+    private static class Decoder {
+        private final ByteBuffer buffer;
+
+        Decoder(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        BinaryAST readAST() throws IOException {
+            for (byte expected : MAGIC) {
+                if (buffer.get() != expected) {
+                    throw new IOException("Not a binary AST");
+                }
+            }
+            int version = readVarint();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary AST version " + version);
+            }
+            int flags = readVarint();
+
+            String[] strings = new String[readCount()];
+            for (int i = 0; i < strings.length; i++) {
+                strings[i] = readString();
+            }
+
+            int size = readCount();
+            if (size == 0) {
+                throw new IOException("Corrupt binary AST: no root");
+            }
+            FlatAST ast = new FlatAST(size, strings);
+            int previousStart = 0;
+            for (int node = 0; node < size; node++) {
+                int kind = readVarint();
+                int end = node + readVarint();
+                int payload = readSignedVarint();
+                if (kind < STYLESHEET || kind > TAG_SELECTOR || end <= node || end > size
+                        || !isValidPayload((byte) kind, payload, strings.length)) {
+                    throw new IOException("Corrupt binary AST at node " + node);
+                }
+                int start = previousStart + readSignedVarint();
+                int stop = start + readSignedVarint();
+                ast.setNode(node, (byte) kind, end, payload, start, stop);
+                previousStart = start;
+            }
+            if (ast.getEnd(0) != size) {
+                throw new IOException("Corrupt binary AST: nodes outside the root");
+            }
+
+            int errorCount = readCount();
+            for (int i = 0; i < errorCount; i++) {
+                int node = readVarint();
+                if (node < 0 || node >= size) {
+                    throw new IOException("Corrupt binary AST: error on node " + node);
+                }
+                SemanticError error = new SemanticError(readString(), readSignedVarint());
+                error.line = readVarint();
+                error.column = readVarint();
+                ast.setError(node, error);
+            }
+
+            int lineCount = readCount();
+            if (lineCount == 0) {
+                return new BinaryAST(ast, flags, null);
+            }
+            int[] lineStarts = new int[lineCount];
+            for (int line = 0; line < lineCount; line++) {
+                lineStarts[line] = (line > 0 ? lineStarts[line - 1] : 0) + readVarint();
+                if (line == 0 ? lineStarts[0] != 0 : lineStarts[line] <= lineStarts[line - 1]) {
+                    throw new IOException("Corrupt binary AST: line " + (line + 1));
+                }
+            }
+            return new BinaryAST(ast, flags, new LineIndex(lineStarts));
+        }
+
+        private static boolean isValidPayload(byte kind, int payload, int stringCount) {
+            switch (kind) {
+                case PROPERTY_NAME:
+                case VARIABLE_REFERENCE:
+                case CLASS_SELECTOR:
+                case ID_SELECTOR:
+                case TAG_SELECTOR:
+                    return payload >= 0 && payload < stringCount;
+                case COLOR_LITERAL:
+                    return payload >= 0 || -1 - payload < stringCount;
+                default:
+                    return true;
+            }
+        }
+
+        private int readVarint() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = buffer.get();
+                value |= (b & 0x7F) << shift;
+                if (b >= 0) {
+                    return value;
+                }
+            }
+            throw new IOException("Corrupt binary AST: varint too long");
+        }
+        private int readSignedVarint() throws IOException {
+            int value = readVarint();
+            return (value >>> 1) ^ -(value & 1);
+        }
+        //A count can not be larger than the bytes that are left, so corrupt counts fail early
+        private int readCount() throws IOException {
+            int count = readVarint();
+            if (count < 0 || count > buffer.remaining()) {
+                throw new IOException("Corrupt binary AST: count " + count);
+            }
+            return count;
+        }
+        private String readString() throws IOException {
+            byte[] utf8 = new byte[readCount()];
+            buffer.get(utf8);
+            return new String(utf8, StandardCharsets.UTF_8);
+        }
+    }
+}
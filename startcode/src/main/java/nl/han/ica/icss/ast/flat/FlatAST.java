@@ -0,0 +1,411 @@
+package nl.han.ica.icss.ast.flat;
+
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+
+/*
+ * Compact representation of an AST for very large stylesheets. Nodes are indices into
+ * primitive arrays instead of objects: a kind, the size of the subtree, the offset of the
+ * first character of the node in the source, the length of its source text and one int
+ * payload. Sizes and lengths are chars; the few that do not fit, like the size of the
+ * stylesheet, are kept in a map. That is 13 bytes per node, about 13.7 with the string
+ * table, measured on a generated stylesheet of 2.2 million nodes where the node classes
+ * take about 70.
+ *
+ * The payload is the value of a pixel, percentage, scalar or bool literal (1 is TRUE), or
+ * an index into a table of distinct strings for property names, variable names and
+ * selectors. Colors as the lexer produces them (# and six lowercase hex digits) are stored
+ * as their RGB value, other color texts as -1 - their string index.
+ *
+ * Nodes are stored in preorder, so the subtree of a node is the range from the node up to
+ * its end, its first child directly follows it and the next sibling of a child starts at the
+ * end of the child. The children of a node are in the same order as ASTNode.getChild() of the
+ * corresponding node class. Parents are only computed when getParent() is first used.
+ * Errors are kept in a separate map, since only a few nodes ever have one.
+ * FlatASTAdapter converts to and from the ASTNode classes.
+ */
+public class FlatAST {
+
+    public static final int NO_NODE = -1;
+
+    public static final byte STYLESHEET = 0;
+    public static final byte STYLERULE = 1;
+    public static final byte DECLARATION = 2;
+    public static final byte PROPERTY_NAME = 3;
+    public static final byte VARIABLE_ASSIGNMENT = 4;
+    public static final byte IF_CLAUSE = 5;
+    public static final byte ELSE_CLAUSE = 6;
+    //Expressions
+    public static final byte VARIABLE_REFERENCE = 7;
+    public static final byte ADD_OPERATION = 8;
+    public static final byte SUBTRACT_OPERATION = 9;
+    public static final byte MULTIPLY_OPERATION = 10;
+    //Literals
+    public static final byte BOOL_LITERAL = 11;
+    public static final byte COLOR_LITERAL = 12;
+    public static final byte PERCENTAGE_LITERAL = 13;
+    public static final byte PIXEL_LITERAL = 14;
+    public static final byte SCALAR_LITERAL = 15;
+    //Selectors
+    public static final byte CLASS_SELECTOR = 16;
+    public static final byte ID_SELECTOR = 17;
+    public static final byte TAG_SELECTOR = 18;
+
+    //A subtree size or source length that is in the overflow map
+    private static final char LONG = Character.MAX_VALUE;
+
+    private final int size;
+    private final byte[] kinds;
+    private final char[] subtreeSizes;
+    private final int[] payloads;
+    private final int[] sourceStarts;
+    //Stop - start + 2, so 0 is an unknown stop and 1 an empty range
+    private final char[] sourceLengths;
+    private final HashMap<Integer, Integer> longEnds = new HashMap<>();
+    private final HashMap<Integer, Integer> longStops = new HashMap<>();
+    private final String[] strings;
+    private final HashMap<Integer, SemanticError> errors = new HashMap<>();
+    private int[] parents;
+
+    /*
+     The nodes are filled in with setNode(), by the Builder and BinaryAST.
+     */
+    FlatAST(int size, String[] strings) {
+        this.size = size;
+        this.kinds = new byte[size];
+        this.subtreeSizes = new char[size];
+        this.payloads = new int[size];
+        this.sourceStarts = new int[size];
+        this.sourceLengths = new char[size];
+        this.strings = strings;
+    }
+
+    void setNode(int node, byte kind, int end, int payload, int sourceStart, int sourceStop) {
+        kinds[node] = kind;
+        payloads[node] = payload;
+        sourceStarts[node] = sourceStart;
+        int subtreeSize = end - node;
+        if (subtreeSize < LONG) {
+            subtreeSizes[node] = (char) subtreeSize;
+        } else {
+            subtreeSizes[node] = LONG;
+            longEnds.put(node, end);
+        }
+        long length = (long) sourceStop - sourceStart + 2;
+        if (sourceStop < 0) {
+            sourceLengths[node] = 0;
+        } else if (sourceStart >= 0 && length > 0 && length < LONG) {
+            sourceLengths[node] = (char) length;
+        } else {
+            sourceLengths[node] = LONG;
+            longStops.put(node, sourceStop);
+        }
+    }
+
+    /*
+     An AST with only an empty stylesheet, like new AST().
+     */
+    public static FlatAST empty() {
+        Builder builder = new Builder();
+        return builder.build(builder.add(STYLESHEET));
+    }
+
+    public int getRoot() {
+        return 0;
+    }
+    public int size() {
+        return size;
+    }
+    public byte getKind(int node) {
+        return kinds[node];
+    }
+    /*
+     Index after the last node in the subtree of a node.
+     */
+    public int getEnd(int node) {
+        char subtreeSize = subtreeSizes[node];
+        if (subtreeSize != LONG) {
+            return node + subtreeSize;
+        }
+        //The stylesheet is the usual long subtree and ends at the end of the arrays
+        return node == 0 ? size : longEnds.get(node);
+    }
+    public int getFirstChild(int node) {
+        return subtreeSizes[node] > 1 ? node + 1 : NO_NODE;
+    }
+    public int getNextSibling(int parent, int child) {
+        int end = getEnd(child);
+        return end < getEnd(parent) ? end : NO_NODE;
+    }
+    /*
+     The first call computes the parents of all nodes, which costs another 4 bytes per node.
+     */
+    public int getParent(int node) {
+        if (parents == null) {
+            int[] result = new int[size];
+            result[0] = NO_NODE;
+            for (int parent = 0; parent < size; parent++) {
+                for (int child = getFirstChild(parent); child != NO_NODE; child = getNextSibling(parent, child)) {
+                    result[child] = parent;
+                }
+            }
+            parents = result;
+        }
+        return parents[node];
+    }
+    /*
+     Value of a pixel, percentage, scalar or bool literal.
+     */
+    public int getValue(int node) {
+        return payloads[node];
+    }
+    public boolean getBoolValue(int node) {
+        return payloads[node] != 0;
+    }
+    /*
+     Text of a color literal, property name, variable reference or selector.
+     */
+    public String getText(int node) {
+        int payload = payloads[node];
+        if (kinds[node] == COLOR_LITERAL) {
+            return payload >= 0 ? colorText(payload) : strings[-1 - payload];
+        }
+        return strings[payload];
+    }
+
+    private static String colorText(int rgb) {
+        char[] text = new char[7];
+        text[0] = '#';
+        for (int i = 6; i > 0; i--) {
+            text[i] = Character.forDigit(rgb & 0xf, 16);
+            rgb >>= 4;
+        }
+        return new String(text);
+    }
+
+    private static int colorValue(String text) {
+        if (text.length() != 7 || text.charAt(0) != '#') {
+            return -1;
+        }
+        int rgb = 0;
+        for (int i = 1; i < 7; i++) {
+            char digit = text.charAt(i);
+            if ((digit < '0' || digit > '9') && (digit < 'a' || digit > 'f')) {
+                return -1;
+            }
+            rgb = rgb << 4 | Character.digit(digit, 16);
+        }
+        return rgb;
+    }
+    /*
+     The i-th child of a node, NO_NODE if there are fewer children.
+     */
+    public int getChild(int node, int index) {
+        int child = getFirstChild(node);
+        for (int i = 0; i < index && child != NO_NODE; i++) {
+            child = getNextSibling(node, child);
+        }
+        return child;
+    }
+
+    public static boolean isLiteral(byte kind) {
+        return kind >= BOOL_LITERAL && kind <= SCALAR_LITERAL;
+    }
+    public static boolean isSelector(byte kind) {
+        return kind >= CLASS_SELECTOR && kind <= TAG_SELECTOR;
+    }
+
+    /*
+     Character offset of the first character of the node in the source, -1 if unknown.
+     */
+    public int getSourceStart(int node) {
+        return sourceStarts[node];
+    }
+    /*
+     Character offset of the last character of the node in the source, -1 if unknown.
+     */
+    public int getSourceStop(int node) {
+        char length = sourceLengths[node];
+        if (length == LONG) {
+            return longStops.get(node);
+        }
+        return length == 0 ? -1 : sourceStarts[node] + length - 2;
+    }
+
+    public SemanticError getError(int node) {
+        return errors.get(node);
+    }
+    public void setError(int node, String description) {
+        errors.put(node, new SemanticError(description, sourceStarts[node]));
+    }
+    public boolean hasError(int node) {
+        return errors.containsKey(node);
+    }
+    void setError(int node, SemanticError error) {
+        errors.put(node, error);
+    }
+    int getErrorCount() {
+        return errors.size();
+    }
+    String[] getStrings() {
+        return strings;
+    }
+    /*
+     All errors in the same order as AST.getErrors(): a node before its children.
+     */
+    public ArrayList<SemanticError> getErrors() {
+        ArrayList<SemanticError> result = new ArrayList<>();
+        //Preorder is the order of the indices
+        for (int node = 0; node < size && result.size() < errors.size(); node++) {
+            SemanticError error = errors.get(node);
+            if (error != null) {
+                result.add(error);
+            }
+        }
+        return result;
+    }
+
+    /*
+     Appends nodes to growing arrays and links them as first child, last child and next
+     sibling. Children can be attached in any order relative to the creation of their
+     parent, so bottom-up construction of expressions works too. build() copies the tree
+     under the root in preorder into a FlatAST, nodes that are not attached are left out.
+     */
+    public static class Builder {
+
+        private static final int INITIAL_CAPACITY = 64;
+
+        private int size = 0;
+        private byte[] kinds = new byte[INITIAL_CAPACITY];
+        private int[] firstChildren = new int[INITIAL_CAPACITY];
+        private int[] lastChildren = new int[INITIAL_CAPACITY];
+        private int[] nextSiblings = new int[INITIAL_CAPACITY];
+        private int[] payloads = new int[INITIAL_CAPACITY];
+        private int[] sourceStarts = new int[INITIAL_CAPACITY];
+        private int[] sourceStops = new int[INITIAL_CAPACITY];
+
+        private final ArrayList<String> strings = new ArrayList<>();
+        private final HashMap<String, Integer> stringIndices = new HashMap<>();
+        private final HashMap<Integer, SemanticError> errors = new HashMap<>();
+
+        public Builder() { }
+
+        /*
+         Starts with the string table of an existing AST, so its string indices stay valid.
+         */
+        public Builder(FlatAST source) {
+            for (String string : source.strings) {
+                internString(string);
+            }
+        }
+
+        public int add(byte kind) {
+            return add(kind, 0);
+        }
+
+        public int add(byte kind, int value) {
+            if (size == kinds.length) {
+                grow();
+            }
+            int node = size++;
+            kinds[node] = kind;
+            firstChildren[node] = NO_NODE;
+            lastChildren[node] = NO_NODE;
+            nextSiblings[node] = NO_NODE;
+            payloads[node] = value;
+            sourceStarts[node] = -1;
+            sourceStops[node] = -1;
+            return node;
+        }
+
+        public int add(byte kind, boolean value) {
+            return add(kind, value ? 1 : 0);
+        }
+
+        public int add(byte kind, String text) {
+            if (kind == COLOR_LITERAL) {
+                int rgb = colorValue(text);
+                return add(kind, rgb >= 0 ? rgb : -1 - internString(text));
+            }
+            return add(kind, internString(text));
+        }
+
+        /*
+         Attaches a node as the last child of the parent.
+         */
+        public void appendChild(int parent, int child) {
+            if (lastChildren[parent] == NO_NODE) {
+                firstChildren[parent] = child;
+            } else {
+                nextSiblings[lastChildren[parent]] = child;
+            }
+            lastChildren[parent] = child;
+        }
+
+        public void setSourceStart(int node, int offset) {
+            sourceStarts[node] = offset;
+        }
+
+        public void setSourceStop(int node, int offset) {
+            sourceStops[node] = offset;
+        }
+
+        public void setError(int node, SemanticError error) {
+            errors.put(node, error);
+        }
+
+        public FlatAST build(int root) {
+            FlatAST ast = new FlatAST(countNodes(root), strings.toArray(new String[0]));
+            copyPreorder(ast, root, 0);
+            return ast;
+        }
+
+        private int countNodes(int node) {
+            int count = 1;
+            for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+                count += countNodes(child);
+            }
+            return count;
+        }
+
+        /*
+         Copies a subtree to the given index and returns the index after it.
+         */
+        private int copyPreorder(FlatAST ast, int node, int index) {
+            SemanticError error = errors.get(node);
+            if (error != null) {
+                ast.errors.put(index, error);
+            }
+            int end = index + 1;
+            for (int child = firstChildren[node]; child != NO_NODE; child = nextSiblings[child]) {
+                end = copyPreorder(ast, child, end);
+            }
+            ast.setNode(index, kinds[node], end, payloads[node], sourceStarts[node], sourceStops[node]);
+            return end;
+        }
+
+        private int internString(String text) {
+            Integer index = stringIndices.get(text);
+            if (index == null) {
+                index = strings.size();
+                strings.add(text);
+                stringIndices.put(text, index);
+            }
+            return index;
+        }
+
+        private void grow() {
+            int capacity = kinds.length * 2;
+            kinds = Arrays.copyOf(kinds, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            payloads = Arrays.copyOf(payloads, capacity);
+            sourceStarts = Arrays.copyOf(sourceStarts, capacity);
+            sourceStops = Arrays.copyOf(sourceStops, capacity);
+        }
+    }
+}
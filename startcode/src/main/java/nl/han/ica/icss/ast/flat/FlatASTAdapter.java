@@ -0,0 +1,197 @@
+package nl.han.ica.icss.ast.flat;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+
+import static nl.han.ica.icss.ast.flat.FlatAST.*;
+
+/*
+ * Converts between FlatAST and the ASTNode classes without losing anything: node kinds,
+ * values, the order of the children, the source ranges and the errors. The GUI and the tests work on the
+ * node classes, so they use this to look at a flat AST.
+ */
+public class FlatASTAdapter {
+
+    private FlatASTAdapter() { }
+
+    public static AST toAST(FlatAST flat) {
+        return new AST((Stylesheet) toNode(flat, flat.getRoot()));
+    }
+
+    public static FlatAST fromAST(AST ast) {
+        FlatAST.Builder builder = new FlatAST.Builder();
+        int root = ast.root.accept(new NodeAdder(builder));
+        return builder.build(root);
+    }
+
+    private static ASTNode toNode(FlatAST flat, int node) {
+        ASTNode result = createNode(flat, node);
+        for (int child = flat.getFirstChild(node); child != NO_NODE; child = flat.getNextSibling(node, child)) {
+            result.addChild(toNode(flat, child));
+        }
+        if (flat.getSourceStart(node) >= 0) {
+            result.setSourceRange(flat.getSourceStart(node), flat.getSourceStop(node));
+        }
+        if (flat.hasError(node)) {
+            result.setError(flat.getError(node));
+        }
+        return result;
+    }
+
+    private static ASTNode createNode(FlatAST flat, int node) {
+        switch (flat.getKind(node)) {
+            case STYLESHEET:
+                return new Stylesheet();
+            case STYLERULE:
+                return new Stylerule();
+            case DECLARATION:
+                return new Declaration();
+            case PROPERTY_NAME:
+                return new PropertyName(flat.getText(node));
+            case VARIABLE_ASSIGNMENT:
+                return new VariableAssignment();
+            case IF_CLAUSE:
+                return new IfClause();
+            case ELSE_CLAUSE:
+                return new ElseClause();
+            case VARIABLE_REFERENCE:
+                return new VariableReference(flat.getText(node));
+            case ADD_OPERATION:
+                return new AddOperation();
+            case SUBTRACT_OPERATION:
+                return new SubtractOperation();
+            case MULTIPLY_OPERATION:
+                return new MultiplyOperation();
+            case BOOL_LITERAL:
+                return new BoolLiteral(flat.getBoolValue(node));
+            case COLOR_LITERAL:
+                return new ColorLiteral(flat.getText(node));
+            case PERCENTAGE_LITERAL:
+                return new PercentageLiteral(flat.getValue(node));
+            case PIXEL_LITERAL:
+                return new PixelLiteral(flat.getValue(node));
+            case SCALAR_LITERAL:
+                return new ScalarLiteral(flat.getValue(node));
+            case CLASS_SELECTOR:
+                return new ClassSelector(flat.getText(node));
+            case ID_SELECTOR:
+                return new IdSelector(flat.getText(node));
+            case TAG_SELECTOR:
+                return new TagSelector(flat.getText(node));
+            default:
+                throw new IllegalStateException("Unknown node kind: " + flat.getKind(node));
+        }
+    }
+
+    /*
+     Adds a node with all its children to the builder and returns its index.
+     */
+    private static class NodeAdder implements ASTVisitor<Integer> {
+
+        private final FlatAST.Builder builder;
+
+        NodeAdder(FlatAST.Builder builder) {
+            this.builder = builder;
+        }
+
+        private int addWithChildren(ASTNode node, int index) {
+            for (int i = 0; i < node.getChildCount(); i++) {
+                builder.appendChild(index, node.getChild(i).accept(this));
+            }
+            builder.setSourceStart(index, node.getSourceStart());
+            builder.setSourceStop(index, node.getSourceStop());
+            if (node.hasError()) {
+                builder.setError(index, node.getError());
+            }
+            return index;
+        }
+
+        @Override
+        public Integer visitNode(ASTNode node) {
+            throw new IllegalArgumentException("No flat representation for " + node.getNodeLabel());
+        }
+
+        @Override
+        public Integer visitStylesheet(Stylesheet node) {
+            return addWithChildren(node, builder.add(STYLESHEET));
+        }
+        @Override
+        public Integer visitStylerule(Stylerule node) {
+            return addWithChildren(node, builder.add(STYLERULE));
+        }
+        @Override
+        public Integer visitDeclaration(Declaration node) {
+            return addWithChildren(node, builder.add(DECLARATION));
+        }
+        @Override
+        public Integer visitPropertyName(PropertyName node) {
+            return addWithChildren(node, builder.add(PROPERTY_NAME, node.name));
+        }
+        @Override
+        public Integer visitVariableAssignment(VariableAssignment node) {
+            return addWithChildren(node, builder.add(VARIABLE_ASSIGNMENT));
+        }
+        @Override
+        public Integer visitIfClause(IfClause node) {
+            return addWithChildren(node, builder.add(IF_CLAUSE));
+        }
+        @Override
+        public Integer visitElseClause(ElseClause node) {
+            return addWithChildren(node, builder.add(ELSE_CLAUSE));
+        }
+        @Override
+        public Integer visitVariableReference(VariableReference node) {
+            return addWithChildren(node, builder.add(VARIABLE_REFERENCE, node.name));
+        }
+        @Override
+        public Integer visitAddOperation(AddOperation node) {
+            return addWithChildren(node, builder.add(ADD_OPERATION));
+        }
+        @Override
+        public Integer visitSubtractOperation(SubtractOperation node) {
+            return addWithChildren(node, builder.add(SUBTRACT_OPERATION));
+        }
+        @Override
+        public Integer visitMultiplyOperation(MultiplyOperation node) {
+            return addWithChildren(node, builder.add(MULTIPLY_OPERATION));
+        }
+        @Override
+        public Integer visitBoolLiteral(BoolLiteral node) {
+            return addWithChildren(node, builder.add(BOOL_LITERAL, node.value));
+        }
+        @Override
+        public Integer visitColorLiteral(ColorLiteral node) {
+            return addWithChildren(node, builder.add(COLOR_LITERAL, node.value));
+        }
+        @Override
+        public Integer visitPercentageLiteral(PercentageLiteral node) {
+            return addWithChildren(node, builder.add(PERCENTAGE_LITERAL, node.value));
+        }
+        @Override
+        public Integer visitPixelLiteral(PixelLiteral node) {
+            return addWithChildren(node, builder.add(PIXEL_LITERAL, node.value));
+        }
+        @Override
+        public Integer visitScalarLiteral(ScalarLiteral node) {
+            return addWithChildren(node, builder.add(SCALAR_LITERAL, node.value));
+        }
+        @Override
+        public Integer visitClassSelector(ClassSelector node) {
+            return addWithChildren(node, builder.add(CLASS_SELECTOR, node.cls));
+        }
+        @Override
+        public Integer visitIdSelector(IdSelector node) {
+            return addWithChildren(node, builder.add(ID_SELECTOR, node.id));
+        }
+        @Override
+        public Integer visitTagSelector(TagSelector node) {
+            return addWithChildren(node, builder.add(TAG_SELECTOR, node.tag));
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
-import java.util.Objects;
 
 public class BoolLiteral extends Literal {
     public boolean value;
@@ -19,16 +20,16 @@ public class BoolLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        BoolLiteral that = (BoolLiteral) o;
-        return value == that.value;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitBoolLiteral(this);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(value);
+    protected boolean valueEquals(ASTNode other) {
+        return value == ((BoolLiteral) other).value;
+    }
+    @Override
+    protected int valueHashCode() {
+        return Boolean.hashCode(value);
     }
 }
@@ -1,5 +1,7 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
 import java.util.Objects;
@@ -15,17 +17,17 @@ public class ColorLiteral extends Literal {
         return "Color literal (" + value + ")";
     }
 
+    @Override
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitColorLiteral(this);
+    }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        ColorLiteral that = (ColorLiteral) o;
-        return Objects.equals(value, that.value);
+    protected boolean valueEquals(ASTNode other) {
+        return Objects.equals(value, ((ColorLiteral) other).value);
     }
     @Override
-    public int hashCode() {
-
-        return Objects.hash(value);
+    protected int valueHashCode() {
+        return Objects.hashCode(value);
     }
 }
@@ -1,9 +1,9 @@
 package nl.han.ica.icss.ast.literals;
 
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.ASTVisitor;
 import nl.han.ica.icss.ast.Literal;
 
-import java.util.Objects;
-
 public class ScalarLiteral extends Literal {
     public int value;
 
@@ -19,16 +19,16 @@ public class ScalarLiteral extends Literal {
     }
 
     @Override
-    public boolean equals(Object o) {
-        if (this == o) return true;
-        if (o == null || getClass() != o.getClass()) return false;
-        if (!super.equals(o)) return false;
-        ScalarLiteral that = (ScalarLiteral) o;
-        return value == that.value;
+    public <R> R accept(ASTVisitor<R> visitor) {
+        return visitor.visitScalarLiteral(this);
     }
 
     @Override
-    public int hashCode() {
-        return Objects.hash(value);
+    protected boolean valueEquals(ASTNode other) {
+        return value == ((ScalarLiteral) other).value;
+    }
+    @Override
+    protected int valueHashCode() {
+        return Integer.hashCode(value);
     }
 }
@@ -1,7 +1,7 @@
 package nl.han.ica.icss.checker;
 
-import nl.han.ica.datastructures.linkedList.HANLinkedList;
-import nl.han.ica.datastructures.linkedList.IHANLinkedList;
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.AddOperation;
@@ -9,42 +9,161 @@ import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
 import nl.han.ica.icss.ast.types.ExpressionType;
 
-import java.util.HashMap;
-
 public class Checker {
 
-    private IHANLinkedList<HashMap<String, ExpressionType>> scopeStack;
+    private IHANScopeChain<String, ExpressionType> scopeStack;
+    private final NodeChecker nodeChecker = new NodeChecker();
+    private final ExpressionTyper expressionTyper = new ExpressionTyper();
+
+    public Checker() {
+        this(new HANSymbolTable<>());
+    }
+
+    public Checker(IHANScopeChain<String, ExpressionType> scopeStack) {
+        this.scopeStack = scopeStack;
+    }
 
     public void check(AST ast) {
-        scopeStack = new HANLinkedList<>();
         traverseTree(ast.root);
     }
 
     private void traverseTree(ASTNode node) {
-        if (node instanceof Stylesheet || node instanceof Stylerule || node instanceof IfClause) {
-            scopeStack.addFirst(new HashMap<>());
+        node.accept(nodeChecker);
+    }
+
+    private void traverseChildren(ASTNode node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            traverseTree(node.getChild(i));
+        }
+    }
+
+    /*
+     Checks each node kind and then its children. Stylesheets, stylerules and
+     if-clauses open a new scope around their children.
+     */
+    private class NodeChecker implements ASTVisitor<Void> {
+
+        @Override
+        public Void visitNode(ASTNode node) {
+            traverseChildren(node);
+            return null;
+        }
+
+        @Override
+        public Void visitStylesheet(Stylesheet node) {
+            scopeStack.pushScope();
+            traverseChildren(node);
+            scopeStack.popScope();
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(Stylerule node) {
+            scopeStack.pushScope();
+            traverseChildren(node);
+            scopeStack.popScope();
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(IfClause node) {
+            scopeStack.pushScope();
+            checkIfClause(node);
+            traverseChildren(node);
+            scopeStack.popScope();
+            return null;
+        }
+
+        @Override
+        public Void visitVariableAssignment(VariableAssignment node) {
+            checkVariableAssignment(node);
+            traverseChildren(node);
+            return null;
+        }
+
+        @Override
+        public Void visitDeclaration(Declaration node) {
+            checkDeclaration(node);
+            traverseChildren(node);
+            return null;
         }
 
-        if (node instanceof VariableAssignment) {
-            checkVariableAssignment((VariableAssignment) node);
-        } else if (node instanceof Declaration) {
-            checkDeclaration((Declaration) node);
-        } else if (node instanceof IfClause) {
-            checkIfClause((IfClause) node);
-        } else if (node instanceof Operation) {
-            checkOperation((Operation) node);
+        @Override
+        public Void visitAddOperation(AddOperation node) {
+            checkAdditiveOperation(node);
+            traverseChildren(node);
+            return null;
         }
 
-        if (node instanceof VariableReference) {
-            validateVariableScope((VariableReference) node);
+        @Override
+        public Void visitSubtractOperation(SubtractOperation node) {
+            checkAdditiveOperation(node);
+            traverseChildren(node);
+            return null;
         }
 
-        for (ASTNode child : node.getChildren()) {
-            traverseTree(child);
+        @Override
+        public Void visitMultiplyOperation(MultiplyOperation node) {
+            checkMultiplyOperation(node);
+            traverseChildren(node);
+            return null;
         }
 
-        if (node instanceof Stylesheet || node instanceof Stylerule || node instanceof IfClause) {
-            scopeStack.removeFirst();
+        @Override
+        public Void visitVariableReference(VariableReference node) {
+            validateVariableScope(node);
+            return null;
+        }
+    }
+
+    /*
+     Determines the type of an expression, UNDEFINED if it has none.
+     */
+    private class ExpressionTyper implements ASTVisitor<ExpressionType> {
+
+        @Override
+        public ExpressionType visitNode(ASTNode node) {
+            return ExpressionType.UNDEFINED;
+        }
+
+        @Override
+        public ExpressionType visitOperation(Operation node) {
+            return getOperationType(node);
+        }
+
+        @Override
+        public ExpressionType visitMultiplyOperation(MultiplyOperation node) {
+            return getMultiplyType(node);
+        }
+
+        @Override
+        public ExpressionType visitVariableReference(VariableReference node) {
+            return getVariableType(node);
+        }
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral node) {
+            return ExpressionType.PIXEL;
+        }
+
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral node) {
+            return ExpressionType.COLOR;
+        }
+
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral node) {
+            return ExpressionType.PERCENTAGE;
+        }
+
+        @Override
+        public ExpressionType visitScalarLiteral(ScalarLiteral node) {
+            return ExpressionType.SCALAR;
+        }
+
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral node) {
+            return ExpressionType.BOOL;
         }
     }
 
@@ -54,18 +173,15 @@ public class Checker {
             if (isVariableConflict(assignment.name.name, type)) {
                 assignment.setError("Variable is already defined with a different type.");
             } else {
-                scopeStack.getFirst().put(assignment.name.name, type);
+                scopeStack.declare(assignment.name.name, type);
             }
         }
     }
 
     private boolean isVariableConflict(String variableName, ExpressionType type) {
-        for (int i = 0; i < scopeStack.getSize(); i++) {
-            if (scopeStack.get(i).containsKey(variableName) && scopeStack.get(i).get(variableName) != type) {
-                return true;
-            }
-        }
-        return false;
+        //A name is only ever declared with one type, so the innermost binding is representative
+        ExpressionType declaredType = scopeStack.resolve(variableName);
+        return declaredType != null && declaredType != type;
     }
 
     private void checkDeclaration(Declaration declaration) {
@@ -77,9 +193,7 @@ public class Checker {
     }
 
     private void checkDimensionProperty(Declaration declaration) {
-        ExpressionType exprType = (declaration.expression instanceof VariableReference)
-                ? getVariableType((VariableReference) declaration.expression)
-                : determineExpressionType(declaration.expression);
+        ExpressionType exprType = determineExpressionType(declaration.expression);
 
         if (exprType != ExpressionType.PIXEL && exprType != ExpressionType.PERCENTAGE) {
             declaration.setError("Expected PIXEL or PERCENTAGE, but got " + exprType);
@@ -87,9 +201,7 @@ public class Checker {
     }
 
     private void checkColorProperty(Declaration declaration) {
-        ExpressionType exprType = declaration.expression instanceof VariableReference
-                ? getVariableType((VariableReference) declaration.expression)
-                : determineExpressionType(declaration.expression);
+        ExpressionType exprType = determineExpressionType(declaration.expression);
 
         if (exprType != ExpressionType.COLOR) {
             declaration.setError("Expected COLOR, but got " + exprType);
@@ -97,63 +209,54 @@ public class Checker {
     }
 
     private void checkIfClause(IfClause clause) {
-        ExpressionType conditionType;
-        if (clause.conditionalExpression instanceof VariableReference) {
-            VariableReference variable = (VariableReference) clause.conditionalExpression;
-            conditionType = getVariableType(variable);
-        } else {
-            conditionType = determineExpressionType(clause.conditionalExpression);
-        }
+        ExpressionType conditionType = determineExpressionType(clause.conditionalExpression);
 
         if (conditionType != ExpressionType.BOOL) {
             clause.conditionalExpression.setError("Expected BOOL for if-condition, but got " + conditionType);
         }
     }
 
-    private void checkOperation(Operation operation) {
+    private void checkAdditiveOperation(Operation operation) {
         ExpressionType left = determineExpressionType(operation.lhs);
         ExpressionType right = determineExpressionType(operation.rhs);
 
-        if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
-            operation.setError("Operations cannot involve color types.");
+        if (isColorOperation(operation, left, right)) {
             return;
         }
+        if (left != right) {
+            operation.setError("Operands must be of the same type for addition and subtraction.");
+        }
+    }
 
-        if (operation instanceof AddOperation || operation instanceof SubtractOperation) {
-            if (left != right) {
-                operation.setError("Operands must be of the same type for addition and subtraction.");
-            }
+    private void checkMultiplyOperation(Operation operation) {
+        ExpressionType left = determineExpressionType(operation.lhs);
+        ExpressionType right = determineExpressionType(operation.rhs);
+
+        if (isColorOperation(operation, left, right)) {
+            return;
+        }
+        if (left != ExpressionType.SCALAR && right != ExpressionType.SCALAR) {
+            operation.setError("At least one operand must be scalar for multiplication.");
         }
+    }
 
-        if (operation instanceof MultiplyOperation) {
-            if (left != ExpressionType.SCALAR && right != ExpressionType.SCALAR) {
-                operation.setError("At least one operand must be scalar for multiplication.");
-            }
+    private boolean isColorOperation(Operation operation, ExpressionType left, ExpressionType right) {
+        if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
+            operation.setError("Operations cannot involve color types.");
+            return true;
         }
+        return false;
     }
 
     private void validateVariableScope(VariableReference reference) {
-        boolean isVariableInScope = false;
-        for (int i = 0; i < scopeStack.getSize(); i++) {
-            if (scopeStack.get(i).containsKey(reference.name)) {
-                isVariableInScope = true;
-                break;
-            }
-        }
-        if (!isVariableInScope) {
+        if (!scopeStack.isDeclared(reference.name)) {
             reference.setError("Variable '" + reference.name + "' is being used outside of its scope.");
         }
     }
 
     private ExpressionType getVariableType(VariableReference reference) {
-        ExpressionType type = ExpressionType.UNDEFINED;
-        for (int i = 0; i < scopeStack.getSize(); i++) {
-            if (scopeStack.get(i).containsKey(reference.name)) {
-                type = scopeStack.get(i).get(reference.name);
-                break;
-            }
-        }
-        return type;
+        ExpressionType type = scopeStack.resolve(reference.name);
+        return type != null ? type : ExpressionType.UNDEFINED;
     }
 
     private ExpressionType getOperationType(Operation operation) {
@@ -166,31 +269,26 @@ public class Checker {
         return ExpressionType.UNDEFINED;
     }
 
-    private ExpressionType determineExpressionType(Expression expression) {
-        if (expression instanceof Literal) {
-            return getLiteralType((Literal) expression);
-        } else if (expression instanceof Operation) {
-            return getOperationType((Operation) expression);
-        } else if (expression instanceof VariableReference) {
-            return getVariableType((VariableReference) expression);
-        } else {
-            return ExpressionType.UNDEFINED;
+    /*
+     The same cases as the evaluators: a pixel times a scalar, either way round, and a
+     percentage times a scalar give pixels, other products have no value.
+     */
+    private ExpressionType getMultiplyType(MultiplyOperation operation) {
+        ExpressionType left = determineExpressionType(operation.lhs);
+        ExpressionType right = determineExpressionType(operation.rhs);
+
+        if (left == ExpressionType.PIXEL && right == ExpressionType.SCALAR
+                || left == ExpressionType.SCALAR && right == ExpressionType.PIXEL
+                || left == ExpressionType.PERCENTAGE && right == ExpressionType.SCALAR) {
+            return ExpressionType.PIXEL;
         }
+        return ExpressionType.UNDEFINED;
     }
 
-    private ExpressionType getLiteralType(Literal literal) {
-        if (literal instanceof PixelLiteral) {
-            return ExpressionType.PIXEL;
-        } else if (literal instanceof ColorLiteral) {
-            return ExpressionType.COLOR;
-        } else if (literal instanceof PercentageLiteral) {
-            return ExpressionType.PERCENTAGE;
-        } else if (literal instanceof ScalarLiteral) {
-            return ExpressionType.SCALAR;
-        } else if (literal instanceof BoolLiteral) {
-            return ExpressionType.BOOL;
-        } else {
+    private ExpressionType determineExpressionType(Expression expression) {
+        if (expression == null) {
             return ExpressionType.UNDEFINED;
         }
+        return expression.accept(expressionTyper);
     }
 }
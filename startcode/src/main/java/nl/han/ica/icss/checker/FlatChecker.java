@@ -0,0 +1,205 @@
+package nl.han.ica.icss.checker;
+
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.ast.flat.FlatAST;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import static nl.han.ica.icss.ast.flat.FlatAST.*;
+
+/*
+ * The checks of Checker on a FlatAST. Errors are set on the same nodes and with the
+ * same descriptions, so both report identical errors for the same stylesheet.
+ */
+public class FlatChecker {
+
+    private IHANScopeChain<String, ExpressionType> scopeStack;
+    private FlatAST ast;
+
+    public FlatChecker() {
+        this(new HANSymbolTable<>());
+    }
+
+    public FlatChecker(IHANScopeChain<String, ExpressionType> scopeStack) {
+        this.scopeStack = scopeStack;
+    }
+
+    public void check(FlatAST ast) {
+        this.ast = ast;
+        traverseTree(ast.getRoot());
+    }
+
+    private void traverseTree(int node) {
+        switch (ast.getKind(node)) {
+            case STYLESHEET:
+            case STYLERULE:
+                scopeStack.pushScope();
+                traverseChildren(node);
+                scopeStack.popScope();
+                break;
+            case IF_CLAUSE:
+                scopeStack.pushScope();
+                checkIfClause(node);
+                traverseChildren(node);
+                scopeStack.popScope();
+                break;
+            case VARIABLE_ASSIGNMENT:
+                checkVariableAssignment(node);
+                traverseChildren(node);
+                break;
+            case DECLARATION:
+                checkDeclaration(node);
+                traverseChildren(node);
+                break;
+            case ADD_OPERATION:
+            case SUBTRACT_OPERATION:
+                checkAdditiveOperation(node);
+                traverseChildren(node);
+                break;
+            case MULTIPLY_OPERATION:
+                checkMultiplyOperation(node);
+                traverseChildren(node);
+                break;
+            case VARIABLE_REFERENCE:
+                validateVariableScope(node);
+                break;
+            default:
+                traverseChildren(node);
+        }
+    }
+
+    private void traverseChildren(int node) {
+        for (int child = ast.getFirstChild(node); child != NO_NODE; child = ast.getNextSibling(node, child)) {
+            traverseTree(child);
+        }
+    }
+
+    private void checkVariableAssignment(int assignment) {
+        int name = ast.getFirstChild(assignment);
+        int expression = ast.getNextSibling(assignment, name);
+        if (expression != NO_NODE) {
+            ExpressionType type = determineExpressionType(expression);
+            if (isVariableConflict(ast.getText(name), type)) {
+                ast.setError(assignment, "Variable is already defined with a different type.");
+            } else {
+                scopeStack.declare(ast.getText(name), type);
+            }
+        }
+    }
+
+    private boolean isVariableConflict(String variableName, ExpressionType type) {
+        //A name is only ever declared with one type, so the innermost binding is representative
+        ExpressionType declaredType = scopeStack.resolve(variableName);
+        return declaredType != null && declaredType != type;
+    }
+
+    private void checkDeclaration(int declaration) {
+        String property = ast.getText(ast.getFirstChild(declaration));
+        if (property.equals("width") || property.equals("height")) {
+            ExpressionType exprType = determineExpressionType(declarationExpression(declaration));
+            if (exprType != ExpressionType.PIXEL && exprType != ExpressionType.PERCENTAGE) {
+                ast.setError(declaration, "Expected PIXEL or PERCENTAGE, but got " + exprType);
+            }
+        } else if (property.equals("color") || property.equals("background-color")) {
+            ExpressionType exprType = determineExpressionType(declarationExpression(declaration));
+            if (exprType != ExpressionType.COLOR) {
+                ast.setError(declaration, "Expected COLOR, but got " + exprType);
+            }
+        }
+    }
+
+    private int declarationExpression(int declaration) {
+        return ast.getNextSibling(declaration, ast.getFirstChild(declaration));
+    }
+
+    private void checkIfClause(int clause) {
+        int condition = ast.getFirstChild(clause);
+        ExpressionType conditionType = determineExpressionType(condition);
+
+        if (conditionType != ExpressionType.BOOL) {
+            ast.setError(condition, "Expected BOOL for if-condition, but got " + conditionType);
+        }
+    }
+
+    private void checkAdditiveOperation(int operation) {
+        ExpressionType left = determineExpressionType(ast.getFirstChild(operation));
+        ExpressionType right = determineExpressionType(ast.getChild(operation, 1));
+
+        if (isColorOperation(operation, left, right)) {
+            return;
+        }
+        if (left != right) {
+            ast.setError(operation, "Operands must be of the same type for addition and subtraction.");
+        }
+    }
+
+    private void checkMultiplyOperation(int operation) {
+        ExpressionType left = determineExpressionType(ast.getFirstChild(operation));
+        ExpressionType right = determineExpressionType(ast.getChild(operation, 1));
+
+        if (isColorOperation(operation, left, right)) {
+            return;
+        }
+        if (left != ExpressionType.SCALAR && right != ExpressionType.SCALAR) {
+            ast.setError(operation, "At least one operand must be scalar for multiplication.");
+        }
+    }
+
+    private boolean isColorOperation(int operation, ExpressionType left, ExpressionType right) {
+        if (left == ExpressionType.COLOR || right == ExpressionType.COLOR) {
+            ast.setError(operation, "Operations cannot involve color types.");
+            return true;
+        }
+        return false;
+    }
+
+    private void validateVariableScope(int reference) {
+        String name = ast.getText(reference);
+        if (!scopeStack.isDeclared(name)) {
+            ast.setError(reference, "Variable '" + name + "' is being used outside of its scope.");
+        }
+    }
+
+    //The products FlatEvaluator.evaluateMultiplyOperation() can compute
+    private ExpressionType determineMultiplyType(int operation) {
+        ExpressionType left = determineExpressionType(ast.getFirstChild(operation));
+        ExpressionType right = determineExpressionType(ast.getChild(operation, 1));
+
+        if (left == ExpressionType.PIXEL && right == ExpressionType.SCALAR
+                || left == ExpressionType.SCALAR && right == ExpressionType.PIXEL
+                || left == ExpressionType.PERCENTAGE && right == ExpressionType.SCALAR) {
+            return ExpressionType.PIXEL;
+        }
+        return ExpressionType.UNDEFINED;
+    }
+
+    private ExpressionType determineExpressionType(int expression) {
+        if (expression == NO_NODE) {
+            return ExpressionType.UNDEFINED;
+        }
+        switch (ast.getKind(expression)) {
+            case PIXEL_LITERAL:
+                return ExpressionType.PIXEL;
+            case COLOR_LITERAL:
+                return ExpressionType.COLOR;
+            case PERCENTAGE_LITERAL:
+                return ExpressionType.PERCENTAGE;
+            case SCALAR_LITERAL:
+                return ExpressionType.SCALAR;
+            case BOOL_LITERAL:
+                return ExpressionType.BOOL;
+            case VARIABLE_REFERENCE:
+                ExpressionType type = scopeStack.resolve(ast.getText(expression));
+                return type != null ? type : ExpressionType.UNDEFINED;
+            case ADD_OPERATION:
+            case SUBTRACT_OPERATION:
+                ExpressionType left = determineExpressionType(ast.getFirstChild(expression));
+                ExpressionType right = determineExpressionType(ast.getChild(expression, 1));
+                return left == right ? left : ExpressionType.UNDEFINED;
+            case MULTIPLY_OPERATION:
+                return determineMultiplyType(expression);
+            default:
+                return ExpressionType.UNDEFINED;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package nl.han.ica.icss.checker;
+
+import java.util.Arrays;
+
+/*
+ * The offsets at which the lines of a source start, to turn the character offsets of
+ * AST nodes into a line and column. Offsets count code points, like the ANTLR char
+ * stream the lexer reads, so characters outside the BMP count as one.
+ */
+public class LineIndex {
+
+	private final int[] lineStarts;
+	private final int lineCount;
+
+	public LineIndex(CharSequence source) {
+		int[] starts = new int[16];
+		int count = 1;
+		int offset = 0;
+		for (int i = 0; i < source.length(); i++, offset++) {
+			char c = source.charAt(i);
+			if (Character.isHighSurrogate(c) && i + 1 < source.length() && Character.isLowSurrogate(source.charAt(i + 1))) {
+				i++;
+			} else if (c == '\n') {
+				if (count == starts.length) {
+					starts = Arrays.copyOf(starts, count * 2);
+				}
+				starts[count++] = offset + 1;
+			}
+		}
+		lineStarts = starts;
+		lineCount = count;
+	}
+
+	/*
+	 From the offsets returned by getLineStart(), for a source that is no longer at hand.
+	 */
+	public LineIndex(int[] lineStarts) {
+		if (lineStarts.length == 0 || lineStarts[0] != 0) {
+			throw new IllegalArgumentException("The first line must start at 0");
+		}
+		this.lineStarts = lineStarts.clone();
+		lineCount = lineStarts.length;
+	}
+
+	public int getLineCount() {
+		return lineCount;
+	}
+
+	//Line starts at 1
+	public int getLineStart(int line) {
+		return lineStarts[line - 1];
+	}
+
+	//Starts at 1
+	public int getLine(int offset) {
+		int index = Arrays.binarySearch(lineStarts, 0, lineCount, offset);
+		//Not a line start: the insertion point is the line after the one with the offset
+		return index >= 0 ? index + 1 : -index - 1;
+	}
+
+	//Starts at 1
+	public int getColumn(int offset) {
+		return offset - lineStarts[getLine(offset) - 1] + 1;
+	}
+}
@@ -1,12 +1,42 @@
 package nl.han.ica.icss.checker;
 
+/*
+ * An error found in the AST. The offset of the node is recorded when the error is set,
+ * the line and column are only filled in when the error is reported, see resolvePosition().
+ */
 public class SemanticError {
 	public String description;
+	//Character offset in the source, -1 if unknown
+	public int offset = -1;
+	//Both start at 1, 0 as long as the position is not resolved
+	public int line = 0;
+	public int column = 0;
 
 	public SemanticError(String description) {
 		this.description = description;
 	}
+	public SemanticError(String description, int offset) {
+		this.description = description;
+		this.offset = offset;
+	}
+
+	public boolean hasPosition() {
+		return line > 0;
+	}
+	/*
+	 Fills in the line and column of the offset from the line starts of the source.
+	 */
+	public void resolvePosition(LineIndex lines) {
+		if (offset >= 0 && !hasPosition()) {
+			line = lines.getLine(offset);
+			column = lines.getColumn(offset);
+		}
+	}
+
 	public String toString() {
+		if (hasPosition()) {
+			return "ERROR at " + line + ":" + column + ": " + description;
+		}
 		return "ERROR: " + description;
 	}
 }
@@ -0,0 +1,355 @@
+package nl.han.ica.icss.cli;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.generator.CompressedOutput;
+import nl.han.ica.icss.generator.SourceMap;
+import nl.han.ica.icss.parser.ASTInternTable;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.Deflater;
+
+/**
+ * Headless compiler that compiles every .icss file below a directory to CSS.
+ * Files are compiled in parallel on a work-stealing pool; every worker thread
+ * keeps its own Pipeline, since a Pipeline holds the state of one compilation.
+ *
+ * Usage: BatchCompiler [--threads N] [--quiet] [--ll-only] [--direct-ast] [--flat-ast] [--intern] [--minify] [--source-maps] [--gzip] [--compression-level N] input-dir [output-dir]
+ *
+ * Without an output directory the .css files are written next to their sources,
+ * otherwise the directory structure below input-dir is mirrored under output-dir.
+ */
+public class BatchCompiler {
+
+    private static final String SOURCE_EXTENSION = ".icss";
+    private static final String TARGET_EXTENSION = ".css";
+    private static final String MAP_EXTENSION = ".map";
+    private static final String GZIP_EXTENSION = ".gz";
+    private static final int NO_GZIP = Integer.MIN_VALUE;
+    //Stylesheets of one project mostly repeat the same properties, colors and selectors
+    private static final int INTERN_TABLE_SIZE = 1 << 16;
+
+    private final Path inputRoot;
+    private final Path outputRoot;
+    private final int parallelism;
+    private final boolean twoStageParsing;
+    private boolean directASTConstruction = false;
+    private boolean flatASTMode = false;
+    private boolean interning = false;
+    private boolean minifiedOutput = false;
+    private boolean sourceMaps = false;
+    //Compression level of the .css.gz files, or NO_GZIP
+    private int gzipLevel = NO_GZIP;
+    private final ASTInternTable internTable = new ASTInternTable(INTERN_TABLE_SIZE);
+    private final List<Pipeline> allPipelines = new CopyOnWriteArrayList<>();
+    private final ThreadLocal<Pipeline> pipelines = ThreadLocal.withInitial(this::createPipeline);
+
+    public BatchCompiler(Path inputRoot, Path outputRoot, int parallelism) {
+        this(inputRoot, outputRoot, parallelism, true);
+    }
+
+    public BatchCompiler(Path inputRoot, Path outputRoot, int parallelism, boolean twoStageParsing) {
+        this.inputRoot = inputRoot;
+        this.outputRoot = outputRoot;
+        this.parallelism = parallelism;
+        this.twoStageParsing = twoStageParsing;
+    }
+
+    public static void main(String[] args) {
+        int threads = Runtime.getRuntime().availableProcessors();
+        boolean quiet = false;
+        boolean twoStageParsing = true;
+        boolean directAST = false;
+        boolean flatAST = false;
+        boolean intern = false;
+        boolean minify = false;
+        boolean sourceMaps = false;
+        boolean gzip = false;
+        int compressionLevel = Deflater.BEST_COMPRESSION;
+        List<String> paths = new ArrayList<>();
+
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--threads") && i + 1 < args.length) {
+                threads = Integer.parseInt(args[++i]);
+            } else if (args[i].equals("--quiet")) {
+                quiet = true;
+            } else if (args[i].equals("--ll-only")) {
+                twoStageParsing = false;
+            } else if (args[i].equals("--direct-ast")) {
+                directAST = true;
+            } else if (args[i].equals("--flat-ast")) {
+                flatAST = true;
+            } else if (args[i].equals("--intern")) {
+                intern = true;
+            } else if (args[i].equals("--minify")) {
+                minify = true;
+            } else if (args[i].equals("--source-maps")) {
+                sourceMaps = true;
+            } else if (args[i].equals("--gzip")) {
+                gzip = true;
+            } else if (args[i].equals("--compression-level") && i + 1 < args.length) {
+                compressionLevel = Integer.parseInt(args[++i]);
+            } else {
+                paths.add(args[i]);
+            }
+        }
+        if (paths.isEmpty() || paths.size() > 2) {
+            System.err.println("Usage: BatchCompiler [--threads N] [--quiet] [--ll-only] [--direct-ast] [--flat-ast] [--intern] [--minify] [--source-maps] [--gzip] [--compression-level N] input-dir [output-dir]");
+            System.exit(2);
+        }
+
+        Path input = Paths.get(paths.get(0));
+        Path output = paths.size() == 2 ? Paths.get(paths.get(1)) : null;
+        BatchCompiler compiler = new BatchCompiler(input, output, threads, twoStageParsing);
+        compiler.setDirectASTConstruction(directAST);
+        compiler.setFlatASTMode(flatAST);
+        compiler.setInterning(intern);
+        compiler.setMinifiedOutput(minify);
+        compiler.setSourceMaps(sourceMaps);
+        if (gzip) {
+            compiler.setGzipLevel(compressionLevel);
+        }
+
+        try {
+            long start = System.nanoTime();
+            List<CompileResult> results = compiler.compileAll();
+            long wallNanos = System.nanoTime() - start;
+
+            report(results, wallNanos, quiet, System.out);
+            if (twoStageParsing) {
+                System.out.printf("LL fallbacks: %d of %d parses%n", compiler.getLLFallbackCount(), compiler.getParseCount());
+            }
+            boolean failed = results.stream().anyMatch(result -> !result.isSuccess());
+            System.exit(failed ? 1 : 0);
+        } catch (IOException e) {
+            System.err.println(e);
+            System.exit(2);
+        }
+    }
+
+    public void setDirectASTConstruction(boolean directASTConstruction) {
+        this.directASTConstruction = directASTConstruction;
+    }
+
+    public void setFlatASTMode(boolean flatASTMode) {
+        this.flatASTMode = flatASTMode;
+    }
+
+    /*
+     Interns literals, property names and selectors in one table for all files and threads.
+     */
+    public void setInterning(boolean interning) {
+        this.interning = interning;
+    }
+
+    public void setMinifiedOutput(boolean minifiedOutput) {
+        this.minifiedOutput = minifiedOutput;
+    }
+
+    /*
+     Writes a .css.map next to every .css file, linked from a comment at the end of the CSS.
+     */
+    public void setSourceMaps(boolean sourceMaps) {
+        this.sourceMaps = sourceMaps;
+    }
+
+    /*
+     Also writes a .css.gz next to every .css file, compressed while the CSS is generated.
+     */
+    public void setGzipLevel(int gzipLevel) {
+        if (gzipLevel < Deflater.DEFAULT_COMPRESSION || gzipLevel > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("Compression level must be from -1 to 9, not " + gzipLevel);
+        }
+        this.gzipLevel = gzipLevel;
+    }
+
+    public List<CompileResult> compileAll() throws IOException {
+        List<Path> sources = findSources();
+        if (sources.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        List<Callable<CompileResult>> tasks = new ArrayList<>();
+        for (Path source : sources) {
+            tasks.add(() -> compileFile(source));
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            List<CompileResult> results = new ArrayList<>();
+            for (Future<CompileResult> future : pool.invokeAll(tasks)) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while compiling", e);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    public long getParseCount() {
+        return allPipelines.stream().mapToLong(Pipeline::getParseCount).sum();
+    }
+
+    public long getLLFallbackCount() {
+        return allPipelines.stream().mapToLong(Pipeline::getLLFallbackCount).sum();
+    }
+
+    public CompileResult compileFile(Path source) {
+        long start = System.nanoTime();
+        Path target = targetFor(source);
+        long inputBytes = 0;
+        List<String> errors = new ArrayList<>();
+        boolean writing = false;
+
+        try {
+            byte[] bytes = Files.readAllBytes(source);
+            inputBytes = bytes.length;
+
+            Pipeline pipeline = pipelines.get();
+            pipeline.parseString(new String(bytes, StandardCharsets.UTF_8));
+            if (pipeline.isParsed() && pipeline.check()) {
+                pipeline.transform();
+            }
+            //Errors of the evaluator count like those of the checker
+            if (pipeline.isTransformed()) {
+                if (target.getParent() != null) {
+                    Files.createDirectories(target.getParent());
+                }
+                writing = true;
+                try (OutputStream out = openTarget(target)) {
+                    pipeline.generate(out);
+                    if (sourceMaps) {
+                        writeSourceMap(pipeline.getSourceMap(), source, target, out);
+                    }
+                }
+            } else {
+                errors.addAll(pipeline.getErrors());
+            }
+        } catch (IOException | RuntimeException e) {
+            //A failing file is reported like a file with errors, the others still compile
+            errors.add(e.toString());
+            if (writing) {
+                deleteOutputs(target, errors);
+            }
+        }
+        return new CompileResult(source, target, inputBytes, System.nanoTime() - start, errors);
+    }
+
+    /*
+     Removes what was written of the files of a target that failed halfway.
+     */
+    private static void deleteOutputs(Path target, List<String> errors) {
+        for (Path output : new Path[]{target, target.resolveSibling(target.getFileName() + GZIP_EXTENSION),
+                target.resolveSibling(target.getFileName() + MAP_EXTENSION)}) {
+            try {
+                Files.deleteIfExists(output);
+            } catch (IOException e) {
+                errors.add(e.toString());
+            }
+        }
+    }
+
+    private OutputStream openTarget(Path target) throws IOException {
+        OutputStream css = Files.newOutputStream(target);
+        if (gzipLevel == NO_GZIP) {
+            return css;
+        }
+        try {
+            Path gzipTarget = target.resolveSibling(target.getFileName() + GZIP_EXTENSION);
+            return CompressedOutput.both(css, CompressedOutput.gzip(Files.newOutputStream(gzipTarget), gzipLevel));
+        } catch (IOException | RuntimeException e) {
+            css.close();
+            throw e;
+        }
+    }
+
+    private static void writeSourceMap(SourceMap sourceMap, Path source, Path target, OutputStream css) throws IOException {
+        Path map = target.resolveSibling(target.getFileName() + MAP_EXTENSION);
+        Path mapDirectory = map.toAbsolutePath().getParent();
+        String sourcePath = mapDirectory.relativize(source.toAbsolutePath()).toString().replace('\\', '/');
+        try (Writer out = Files.newBufferedWriter(map, StandardCharsets.UTF_8)) {
+            sourceMap.writeTo(out, target.getFileName().toString(), sourcePath);
+        }
+        css.write(SourceMap.comment(map.getFileName().toString()).getBytes(StandardCharsets.UTF_8));
+    }
+
+    private Pipeline createPipeline() {
+        Pipeline pipeline = new Pipeline();
+        pipeline.setTwoStageParsing(twoStageParsing);
+        pipeline.setDirectASTConstruction(directASTConstruction);
+        pipeline.setFlatASTMode(flatASTMode);
+        pipeline.setMinifiedOutput(minifiedOutput);
+        pipeline.setSourceMaps(sourceMaps);
+        pipeline.setInterning(interning);
+        pipeline.setSharedInternTable(internTable);
+        allPipelines.add(pipeline);
+        return pipeline;
+    }
+
+    private List<Path> findSources() throws IOException {
+        try (Stream<Path> walk = Files.walk(inputRoot)) {
+            return walk.filter(Files::isRegularFile)
+                    .filter(path -> path.getFileName().toString().endsWith(SOURCE_EXTENSION))
+                    .sorted()
+                    .collect(Collectors.toList());
+        }
+    }
+
+    Path targetFor(Path source) {
+        String name = source.getFileName().toString();
+        String cssName = name.substring(0, name.length() - SOURCE_EXTENSION.length()) + TARGET_EXTENSION;
+
+        if (outputRoot == null) {
+            return source.resolveSibling(cssName);
+        }
+        Path relative = inputRoot.relativize(source);
+        return outputRoot.resolve(relative).resolveSibling(cssName);
+    }
+
+    static void report(List<CompileResult> results, long wallNanos, boolean quiet, PrintStream out) {
+        long totalBytes = 0;
+        int failures = 0;
+
+        for (CompileResult result : results) {
+            totalBytes += result.inputBytes;
+            if (!result.isSuccess()) {
+                failures++;
+            }
+            if (!quiet || !result.isSuccess()) {
+                out.printf("%-4s %10.2f ms  %s%n", result.isSuccess() ? "OK" : "FAIL",
+                        result.getElapsedMillis(), result.source);
+                for (String error : result.errors) {
+                    out.println("       " + error);
+                }
+            }
+        }
+
+        double seconds = wallNanos / 1_000_000_000.0;
+        double megabytes = totalBytes / (1024.0 * 1024.0);
+        out.printf("%d files (%d failed), %.2f MB in %.3f s: %.1f files/s, %.2f MB/s%n",
+                results.size(), failures, megabytes, seconds,
+                seconds > 0 ? results.size() / seconds : 0.0,
+                seconds > 0 ? megabytes / seconds : 0.0);
+    }
+}
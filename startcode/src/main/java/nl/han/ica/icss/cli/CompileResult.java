@@ -0,0 +1,32 @@
+package nl.han.ica.icss.cli;
+
+import java.nio.file.Path;
+import java.util.List;
+
+/*
+ * Outcome of compiling a single ICSS file in a batch run.
+ */
+public class CompileResult {
+
+    public final Path source;
+    public final Path target;
+    public final long inputBytes;
+    public final long elapsedNanos;
+    public final List<String> errors;
+
+    public CompileResult(Path source, Path target, long inputBytes, long elapsedNanos, List<String> errors) {
+        this.source = source;
+        this.target = target;
+        this.inputBytes = inputBytes;
+        this.elapsedNanos = elapsedNanos;
+        this.errors = errors;
+    }
+
+    public boolean isSuccess() {
+        return errors.isEmpty();
+    }
+
+    public double getElapsedMillis() {
+        return elapsedNanos / 1_000_000.0;
+    }
+}
@@ -0,0 +1,94 @@
+package nl.han.ica.icss.generator;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*
+ * Streams to hand to Pipeline.generate(OutputStream) or Generator.generate(AST, WritableByteChannel)
+ * so compressed CSS is written while it is generated, instead of compressing the CSS file
+ * afterwards. With both() the plain and the compressed file are written in the same pass.
+ *
+ * Levels are those of Deflater: 0 (none) to 9 (smallest), or -1 for the default.
+ */
+public class CompressedOutput {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private CompressedOutput() {
+	}
+
+	/*
+	 The gzip format, for .css.gz files and Content-Encoding: gzip.
+	 */
+	public static OutputStream gzip(OutputStream out, int level) throws IOException {
+		checkLevel(level);
+		return new GZIPOutputStream(out, BUFFER_SIZE) {
+			{
+				def.setLevel(level);
+			}
+		};
+	}
+
+	/*
+	 The zlib format, for Content-Encoding: deflate.
+	 */
+	public static OutputStream deflate(OutputStream out, int level) {
+		checkLevel(level);
+		Deflater deflater = new Deflater(level);
+		return new DeflaterOutputStream(out, deflater, BUFFER_SIZE) {
+			@Override
+			public void close() throws IOException {
+				//A Deflater passed to the stream is not ended by it
+				try {
+					super.close();
+				} finally {
+					deflater.end();
+				}
+			}
+		};
+	}
+
+	/*
+	 Writes everything to both streams, and closes both.
+	 */
+	public static OutputStream both(OutputStream first, OutputStream second) {
+		return new FilterOutputStream(first) {
+			@Override
+			public void write(int b) throws IOException {
+				out.write(b);
+				second.write(b);
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				out.write(b, off, len);
+				second.write(b, off, len);
+			}
+
+			@Override
+			public void flush() throws IOException {
+				out.flush();
+				second.flush();
+			}
+
+			@Override
+			public void close() throws IOException {
+				try {
+					out.close();
+				} finally {
+					second.close();
+				}
+			}
+		};
+	}
+
+	private static void checkLevel(int level) {
+		if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+			throw new IllegalArgumentException("Compression level must be from -1 to 9, not " + level);
+		}
+	}
+}
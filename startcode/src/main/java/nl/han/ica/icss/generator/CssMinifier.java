@@ -0,0 +1,166 @@
+package nl.han.ica.icss.generator;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+ * Collects the stylerules of Generator or FlatGenerator and writes them as small as
+ * possible, with the meaning they have in a browser:
+ *
+ * - no whitespace, and no semicolon after the last declaration;
+ * - colors like #ffcc00 shortened to #fc0;
+ * - of the declarations of a property in a rule only the last is kept, and declarations
+ *   without a value are left out, since a browser ignores those;
+ * - rules without declarations are left out;
+ * - a rule with the same declarations as an earlier rule is merged into the selector list of
+ *   that rule, if no rule in between sets one of its properties. Otherwise moving it up could
+ *   change which value wins for an element that both rules select.
+ *
+ * Merging needs all rules, so the minified CSS is only written when all were added. The source
+ * offsets of the selectors and declarations are kept for a SourceMap; a merged rule maps its
+ * declarations to those of the rule it was merged into.
+ */
+class CssMinifier {
+
+    private static class Rule {
+        //Selectors and declarations with their source offsets
+        final LinkedHashMap<String, Integer> selectors = new LinkedHashMap<>();
+        final LinkedHashMap<String, String> declarations = new LinkedHashMap<>();
+        final HashMap<String, Integer> declarationOffsets = new HashMap<>();
+        String block;
+        //Where each declaration starts in the block, and its source offset
+        int[] blockStarts;
+        int[] blockOffsets;
+    }
+
+    private final ArrayList<Rule> rules = new ArrayList<>();
+    //The last rule with each block, and the index of the last rule that sets each property
+    private final HashMap<String, Integer> rulesByBlock = new HashMap<>();
+    private final HashMap<String, Integer> lastRuleByProperty = new HashMap<>();
+    private Rule current;
+
+    void startRule() {
+        current = new Rule();
+    }
+
+    void addSelector(String selector, int sourceOffset) {
+        current.selectors.putIfAbsent(selector, sourceOffset);
+    }
+
+    void addDeclaration(String property, String value, int sourceOffset) {
+        if (!value.isEmpty()) {
+            current.declarations.remove(property);
+            current.declarations.put(property, shortenColor(value));
+            current.declarationOffsets.put(property, sourceOffset);
+        }
+    }
+
+    void endRule() {
+        Rule rule = current;
+        current = null;
+        if (rule.declarations.isEmpty()) {
+            return;
+        }
+        StringBuilder block = new StringBuilder("{");
+        rule.blockStarts = new int[rule.declarations.size()];
+        rule.blockOffsets = new int[rule.declarations.size()];
+        int i = 0;
+        for (Map.Entry<String, String> declaration : rule.declarations.entrySet()) {
+            if (block.length() > 1) {
+                block.append(';');
+            }
+            rule.blockStarts[i] = block.length();
+            rule.blockOffsets[i++] = rule.declarationOffsets.get(declaration.getKey());
+            block.append(declaration.getKey()).append(':').append(declaration.getValue());
+        }
+        rule.block = block.append('}').toString();
+
+        Integer earlier = rulesByBlock.get(rule.block);
+        if (earlier != null && isLastToSetItsProperties(rule, earlier)) {
+            Rule merged = rules.get(earlier);
+            for (Map.Entry<String, Integer> selector : rule.selectors.entrySet()) {
+                merged.selectors.putIfAbsent(selector.getKey(), selector.getValue());
+            }
+            return;
+        }
+        int index = rules.size();
+        rules.add(rule);
+        rulesByBlock.put(rule.block, index);
+        for (String property : rule.declarations.keySet()) {
+            lastRuleByProperty.put(property, index);
+        }
+    }
+
+    private boolean isLastToSetItsProperties(Rule rule, int index) {
+        for (String property : rule.declarations.keySet()) {
+            if (lastRuleByProperty.get(property) != index) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+     Writes the rules through a buffer like Generator, mapping them if there is a source map.
+     */
+    void writeTo(Appendable out, SourceMap sourceMap) throws IOException {
+        StringBuilder css = new StringBuilder(Generator.BUFFER_SIZE + Generator.BUFFER_SIZE / 2);
+        for (Rule rule : rules) {
+            boolean first = true;
+            for (Map.Entry<String, Integer> selector : rule.selectors.entrySet()) {
+                if (!first) {
+                    css.append(',');
+                }
+                if (sourceMap != null) {
+                    sourceMap.map(css, selector.getValue());
+                }
+                css.append(selector.getKey());
+                first = false;
+            }
+            if (sourceMap == null) {
+                css.append(rule.block);
+            } else {
+                int written = 0;
+                for (int i = 0; i < rule.blockStarts.length; i++) {
+                    css.append(rule.block, written, rule.blockStarts[i]);
+                    sourceMap.map(css, rule.blockOffsets[i]);
+                    written = rule.blockStarts[i];
+                }
+                css.append(rule.block, written, rule.block.length());
+            }
+            if (css.length() >= Generator.BUFFER_SIZE) {
+                out.append(css);
+                if (sourceMap != null) {
+                    sourceMap.flushed(css);
+                }
+                css.setLength(0);
+            }
+        }
+        out.append(css);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder css = new StringBuilder();
+        for (Rule rule : rules) {
+            css.append(String.join(",", rule.selectors.keySet())).append(rule.block);
+        }
+        return css.toString();
+    }
+
+    /*
+     #aabbcc as #abc, any other value as it is.
+     */
+    static String shortenColor(String value) {
+        if (value.length() == 7 && value.charAt(0) == '#'
+                && value.charAt(1) == value.charAt(2)
+                && value.charAt(3) == value.charAt(4)
+                && value.charAt(5) == value.charAt(6)) {
+            return new String(new char[]{'#', value.charAt(1), value.charAt(3), value.charAt(5)});
+        }
+        return value;
+    }
+}
@@ -0,0 +1,207 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.icss.ast.flat.FlatAST;
+
+import java.io.IOException;
+
+import static nl.han.ica.icss.ast.flat.FlatAST.*;
+
+/*
+ * Writes the same CSS as Generator, from a FlatAST, and streams, minifies and splits it for
+ * parallel mode the same way.
+ */
+public class FlatGenerator {
+
+	private boolean minified = false;
+	private boolean parallel = false;
+	private int parallelThreshold = ParallelGeneration.DEFAULT_THRESHOLD;
+
+	public boolean isMinified() {
+		return minified;
+	}
+
+	public void setMinified(boolean minified) {
+		this.minified = minified;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
+	public String generate(FlatAST ast) {
+		if (minified) {
+			return minify(ast).toString();
+		}
+		StringBuilder css = new StringBuilder();
+		try {
+			if (parallel) {
+				generateInParallel(ast, css);
+			} else {
+				traverse(ast, ast.getRoot(), css, null, null);
+			}
+		} catch (IOException e) {
+			//Only the output can fail, and there is none
+			throw new IllegalStateException(e);
+		}
+		return css.toString();
+	}
+
+	public void generate(FlatAST ast, Appendable out) throws IOException {
+		generate(ast, out, null);
+	}
+
+	public void generate(FlatAST ast, Appendable out, SourceMap sourceMap) throws IOException {
+		if (minified) {
+			minify(ast).writeTo(out, sourceMap);
+			return;
+		}
+		if (parallel && sourceMap == null) {
+			generateInParallel(ast, out);
+			return;
+		}
+		StringBuilder buffer = new StringBuilder(Generator.BUFFER_SIZE + Generator.BUFFER_SIZE / 2);
+		traverse(ast, ast.getRoot(), buffer, out, sourceMap);
+		out.append(buffer);
+	}
+
+	/*
+	 Splits the stylesheet like Generator, below the threshold it is written in one pass.
+	 */
+	private void generateInParallel(FlatAST ast, Appendable out) throws IOException {
+		int root = ast.getRoot();
+		int count = 0;
+		for (int child = ast.getFirstChild(root); child != NO_NODE; child = ast.getNextSibling(root, child)) {
+			count++;
+		}
+		if (count < parallelThreshold) {
+			StringBuilder buffer = new StringBuilder(Generator.BUFFER_SIZE + Generator.BUFFER_SIZE / 2);
+			traverse(ast, root, buffer, out, null);
+			out.append(buffer);
+			return;
+		}
+		int[] children = new int[count];
+		for (int child = ast.getFirstChild(root), i = 0; child != NO_NODE; child = ast.getNextSibling(root, child)) {
+			children[i++] = child;
+		}
+		ParallelGeneration.generate(count, (from, to, css) -> {
+			try {
+				for (int i = from; i < to; i++) {
+					traverse(ast, children[i], css, null, null);
+				}
+			} catch (IOException e) {
+				//There is no output while traversing into a buffer
+				throw new IllegalStateException(e);
+			}
+		}, out);
+	}
+
+	private void traverse(FlatAST ast, int node, StringBuilder css, Appendable out, SourceMap sourceMap) throws IOException {
+		if (ast.getKind(node) == STYLERULE) {
+			generateSelector(ast, node, css, sourceMap);
+			generateDeclaration(ast, node, css, sourceMap);
+			css.append(Generator.RULE_END);
+			if (out != null && css.length() >= Generator.BUFFER_SIZE) {
+				out.append(css);
+				if (sourceMap != null) {
+					sourceMap.flushed(css);
+				}
+				css.setLength(0);
+			}
+		}
+
+		for (int child = ast.getFirstChild(node); child != NO_NODE; child = ast.getNextSibling(node, child)) {
+			traverse(ast, child, css, out, sourceMap);
+		}
+	}
+
+	private CssMinifier minify(FlatAST ast) {
+		CssMinifier minifier = new CssMinifier();
+		StringBuilder value = new StringBuilder();
+		for (int node = 0; node < ast.size(); node++) {
+			if (ast.getKind(node) != STYLERULE) {
+				continue;
+			}
+			minifier.startRule();
+			for (int child = ast.getFirstChild(node); child != NO_NODE; child = ast.getNextSibling(node, child)) {
+				if (isSelector(ast.getKind(child))) {
+					minifier.addSelector(ast.getText(child), ast.getSourceStart(child));
+				} else if (ast.getKind(child) == DECLARATION) {
+					int property = ast.getFirstChild(child);
+					value.setLength(0);
+					generateExpression(ast, ast.getNextSibling(child, property), value);
+					minifier.addDeclaration(ast.getText(property), value.toString(), ast.getSourceStart(child));
+				}
+			}
+			minifier.endRule();
+		}
+		return minifier;
+	}
+
+	private void generateSelector(FlatAST ast, int stylerule, StringBuilder css, SourceMap sourceMap) {
+		boolean first = true;
+		for (int child = ast.getFirstChild(stylerule); child != NO_NODE; child = ast.getNextSibling(stylerule, child)) {
+			if (isSelector(ast.getKind(child))) {
+				if (!first) {
+					css.append(", ");
+				}
+				if (sourceMap != null) {
+					sourceMap.map(css, ast.getSourceStart(child));
+				}
+				css.append(ast.getText(child));
+				first = false;
+			}
+		}
+		css.append(" {\n");
+	}
+
+	private void generateDeclaration(FlatAST ast, int stylerule, StringBuilder css, SourceMap sourceMap) {
+		for (int child = ast.getFirstChild(stylerule); child != NO_NODE; child = ast.getNextSibling(stylerule, child)) {
+			//Only the declarations directly in the rule, not those in an if-clause
+			if (ast.getKind(child) == DECLARATION) {
+				css.append(Generator.INDENT);
+				if (sourceMap != null) {
+					sourceMap.map(css, ast.getSourceStart(child));
+				}
+				int property = ast.getFirstChild(child);
+				css
+						.append(ast.getText(property))
+						.append(": ");
+				generateExpression(ast, ast.getNextSibling(child, property), css);
+				css.append(";\n");
+			}
+		}
+	}
+
+	private void generateExpression(FlatAST ast, int expression, StringBuilder css) {
+		if (expression == NO_NODE) {
+			return;
+		}
+		switch (ast.getKind(expression)) {
+			case PIXEL_LITERAL:
+				css.append(ast.getValue(expression)).append("px");
+				break;
+			case PERCENTAGE_LITERAL:
+				css.append(ast.getValue(expression)).append('%');
+				break;
+			case SCALAR_LITERAL:
+				css.append(ast.getValue(expression));
+				break;
+			case COLOR_LITERAL:
+				css.append(ast.getText(expression));
+				break;
+			default:
+		}
+	}
+}
@@ -5,67 +5,347 @@ import nl.han.ica.icss.ast.literals.ColorLiteral;
 import nl.han.ica.icss.ast.literals.PercentageLiteral;
 import nl.han.ica.icss.ast.literals.PixelLiteral;
 import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.types.ExpressionType;
 
-import java.util.List;
-import java.util.stream.Collectors;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
 
+/*
+ * Writes the CSS of an evaluated AST. The String version builds it in one StringBuilder;
+ * the streaming versions write every stylerule into one reused buffer and hand that to the
+ * output whenever it is full, so the memory used does not grow with the size of the CSS.
+ * Given a SourceMap, they fill it while writing.
+ *
+ * Minified CSS is written by CssMinifier, which needs all stylerules before it can write.
+ *
+ * In parallel mode a stylesheet with at least the threshold number of top-level nodes is
+ * written by ParallelGeneration; CSS with a source map, and minified CSS, are always written
+ * in one sequential pass.
+ */
 public class Generator {
 
+	static final String RULE_END = "}\n\n";
+	//Characters collected before they are written to the output
+	static final int BUFFER_SIZE = 8192;
+	static final String INDENT = "  ";
+
+	private final DeclarationFilter declarationFilter = new DeclarationFilter();
+	private final ExpressionGenerator expressionGenerator = new ExpressionGenerator();
+	private boolean minified = false;
+	private boolean parallel = false;
+	private int parallelThreshold = ParallelGeneration.DEFAULT_THRESHOLD;
+
+	public boolean isMinified() {
+		return minified;
+	}
+
+	public void setMinified(boolean minified) {
+		this.minified = minified;
+	}
+
+	public boolean isParallel() {
+		return parallel;
+	}
+
+	public void setParallel(boolean parallel) {
+		this.parallel = parallel;
+	}
+
+	public int getParallelThreshold() {
+		return parallelThreshold;
+	}
+
+	/*
+	 The number of top-level nodes from which parallel mode splits the stylesheet.
+	 */
+	public void setParallelThreshold(int parallelThreshold) {
+		this.parallelThreshold = parallelThreshold;
+	}
+
 	public String generate(AST ast) {
-		return traverse(ast.root);
+		if (minified) {
+			return minify(ast).toString();
+		}
+		StringBuilder css = new StringBuilder();
+		if (isSplit(ast)) {
+			try {
+				generateInParallel(ast, css);
+			} catch (IOException e) {
+				//Only the output can fail, and a StringBuilder does not
+				throw new IllegalStateException(e);
+			}
+			return css.toString();
+		}
+		ast.root.accept(new RuleGenerator(css, null, null));
+		return css.toString();
 	}
 
-	private String traverse(ASTNode node) {
-		StringBuilder stringBuilder = new StringBuilder();
+	public void generate(AST ast, Appendable out) throws IOException {
+		generate(ast, out, null);
+	}
 
-		if (node instanceof Stylerule) {
-			stringBuilder.append(generateSelector((Stylerule) node));
-			stringBuilder.append(generateDeclaration((Stylerule) node));
-			stringBuilder.append("}\n\n");
+	/*
+	 Also maps the selectors and declarations to their place in the source, if there is a map.
+	 Selectors without a source range, like interned ones, map to their stylerule.
+	 */
+	public void generate(AST ast, Appendable out, SourceMap sourceMap) throws IOException {
+		if (minified) {
+			minify(ast).writeTo(out, sourceMap);
+			return;
+		}
+		if (sourceMap == null && isSplit(ast)) {
+			generateInParallel(ast, out);
+			return;
 		}
+		StringBuilder buffer = new StringBuilder(BUFFER_SIZE + BUFFER_SIZE / 2);
+		try {
+			ast.root.accept(new RuleGenerator(buffer, out, sourceMap));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.append(buffer);
+	}
 
-		for (ASTNode child : node.getChildren()) {
-			stringBuilder.append(traverse(child));
+	/*
+	 Writes the CSS as UTF-8. The channel is not closed.
+	 */
+	public void generate(AST ast, WritableByteChannel out) throws IOException {
+		Writer writer = Channels.newWriter(out, StandardCharsets.UTF_8);
+		generate(ast, writer);
+		writer.flush();
+	}
+
+	private boolean isSplit(AST ast) {
+		return parallel && ast.root.getChildCount() >= parallelThreshold;
+	}
+
+	private void generateInParallel(AST ast, Appendable out) throws IOException {
+		ParallelGeneration.generate(ast.root.getChildCount(), (from, to, css) -> {
+			RuleGenerator ruleGenerator = new RuleGenerator(css, null, null);
+			for (int i = from; i < to; i++) {
+				ast.root.getChild(i).accept(ruleGenerator);
+			}
+		}, out);
+	}
+
+	/*
+	 Writes every stylerule in the tree, in document order, into the buffer. With an output,
+	 a full buffer is written to it and emptied after every stylerule.
+	 */
+	private class RuleGenerator implements ASTVisitor<Void> {
+
+		private final StringBuilder css;
+		private final Appendable out;
+		private final SourceMap sourceMap;
+
+		RuleGenerator(StringBuilder css, Appendable out, SourceMap sourceMap) {
+			this.css = css;
+			this.out = out;
+			this.sourceMap = sourceMap;
+		}
+
+		@Override
+		public Void visitNode(ASTNode node) {
+			traverseChildren(node);
+			return null;
+		}
+
+		@Override
+		public Void visitStylerule(Stylerule node) {
+			appendSelector(css, node, sourceMap);
+			appendDeclarations(css, node, sourceMap);
+			css.append(RULE_END);
+			if (out != null && css.length() >= BUFFER_SIZE) {
+				flush();
+			}
+			traverseChildren(node);
+			return null;
+		}
+
+		private void traverseChildren(ASTNode node) {
+			for (int i = 0; i < node.getChildCount(); i++) {
+				node.getChild(i).accept(this);
+			}
 		}
 
-		return stringBuilder.toString();
+		private void flush() {
+			try {
+				out.append(css);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+			if (sourceMap != null) {
+				sourceMap.flushed(css);
+			}
+			css.setLength(0);
+		}
 	}
 
-	private String generateSelector(Stylerule stylerule) {
-		List<String> selectors = stylerule.selectors.stream()
-				.map(ASTNode::toString)
-				.collect(Collectors.toList());
+	private CssMinifier minify(AST ast) {
+		RuleMinifier ruleMinifier = new RuleMinifier();
+		ast.root.accept(ruleMinifier);
+		return ruleMinifier.minifier;
+	}
+
+	/*
+	 Adds every stylerule in the tree to a CssMinifier, in document order.
+	 */
+	private class RuleMinifier implements ASTVisitor<Void> {
+
+		private final CssMinifier minifier = new CssMinifier();
+
+		@Override
+		public Void visitNode(ASTNode node) {
+			for (int i = 0; i < node.getChildCount(); i++) {
+				node.getChild(i).accept(this);
+			}
+			return null;
+		}
+
+		@Override
+		public Void visitStylerule(Stylerule node) {
+			minifier.startRule();
+			for (Selector selector : node.selectors) {
+				minifier.addSelector(selector.toString(), sourceStart(selector, node));
+			}
+			for (ASTNode child : node.body) {
+				Declaration declaration = child.accept(declarationFilter);
+				if (declaration != null) {
+					minifier.addDeclaration(declaration.property.name, generateExpression(declaration.expression),
+							declaration.getSourceStart());
+				}
+			}
+			minifier.endRule();
+			return visitNode(node);
+		}
+	}
+
+	/*
+	 Returns the node if it is a declaration, null otherwise.
+	 */
+	private static class DeclarationFilter implements ASTVisitor<Declaration> {
+
+		@Override
+		public Declaration visitNode(ASTNode node) {
+			return null;
+		}
+
+		@Override
+		public Declaration visitDeclaration(Declaration declaration) {
+			return declaration;
+		}
+	}
+
+	/*
+	 Writes the value of an evaluated expression, empty for anything that is not a literal.
+	 */
+	private static class ExpressionGenerator implements ASTVisitor<String> {
+
+		@Override
+		public String visitNode(ASTNode node) {
+			return "";
+		}
 
-		return String.join(", ", selectors) + " {\n";
+		@Override
+		public String visitPixelLiteral(PixelLiteral node) {
+			return node.value + "px";
+		}
+
+		@Override
+		public String visitPercentageLiteral(PercentageLiteral node) {
+			return node.value + "%";
+		}
+
+		@Override
+		public String visitScalarLiteral(ScalarLiteral node) {
+			return String.valueOf(node.value);
+		}
+
+		@Override
+		public String visitColorLiteral(ColorLiteral node) {
+			return node.value;
+		}
 	}
 
-	private String generateDeclaration(Stylerule stylerule) {
-		StringBuilder declarations = new StringBuilder();
+	void appendSelector(StringBuilder out, Stylerule stylerule) {
+		appendSelector(out, stylerule, null);
+	}
+
+	private void appendSelector(StringBuilder out, Stylerule stylerule, SourceMap sourceMap) {
+		for (int i = 0; i < stylerule.selectors.size(); i++) {
+			if (i > 0) {
+				out.append(", ");
+			}
+			Selector selector = stylerule.selectors.get(i);
+			if (sourceMap != null) {
+				sourceMap.map(out, sourceStart(selector, stylerule));
+			}
+			out.append(selector);
+		}
+		out.append(" {\n");
+	}
 
-		for (ASTNode node : stylerule.getChildren()) {
-			if (node instanceof Declaration) {
-				Declaration declaration = (Declaration) node;
-				declarations.append("  ")
-						.append(declaration.property.name)
-						.append(": ")
-						.append(generateExpression(declaration.expression))
-						.append(";\n");
+	private void appendDeclarations(StringBuilder out, Stylerule stylerule, SourceMap sourceMap) {
+		for (ASTNode node : stylerule.body) {
+			Declaration declaration = node.accept(declarationFilter);
+			if (declaration != null) {
+				if (sourceMap != null) {
+					sourceMap.map(out, INDENT.length(), declaration.getSourceStart());
+				}
+				appendDeclaration(out, declaration.property.name, declaration.expression);
 			}
 		}
+	}
+
+	private static int sourceStart(Selector selector, Stylerule stylerule) {
+		return selector.hasSourceRange() ? selector.getSourceStart() : stylerule.getSourceStart();
+	}
 
-		return declarations.toString();
+	void appendDeclaration(StringBuilder out, String property, Expression value) {
+		out.append(INDENT)
+				.append(property)
+				.append(": ")
+				.append(generateExpression(value))
+				.append(";\n");
+	}
+
+	/*
+	 Writes a declaration with a value compiled by ExpressionCompiler, like the literal it stands for.
+	 */
+	void appendDeclaration(StringBuilder out, String property, ExpressionType type, int value) {
+		out.append(INDENT)
+				.append(property)
+				.append(": ");
+		switch (type) {
+			case PIXEL:
+				out.append(value).append("px");
+				break;
+			case PERCENTAGE:
+				out.append(value).append('%');
+				break;
+			case SCALAR:
+				out.append(value);
+				break;
+			case COLOR:
+				out.append('#');
+				for (int shift = 20; shift >= 0; shift -= 4) {
+					out.append(Character.forDigit(value >> shift & 0xf, 16));
+				}
+				break;
+			default:
+				break;
+		}
+		out.append(";\n");
 	}
 
 	private String generateExpression(Expression expression) {
-		if (expression instanceof PixelLiteral) {
-			return ((PixelLiteral) expression).value + "px";
-		} else if (expression instanceof PercentageLiteral) {
-			return ((PercentageLiteral) expression).value + "%";
-		} else if (expression instanceof ScalarLiteral) {
-			return String.valueOf(((ScalarLiteral) expression).value);
-		} else if (expression instanceof ColorLiteral) {
-			return ((ColorLiteral) expression).value;
-		}
-		return "";
+		if (expression == null) {
+			return "";
+		}
+		return expression.accept(expressionGenerator);
 	}
 }
@@ -0,0 +1,49 @@
+package nl.han.ica.icss.generator;
+
+import java.io.IOException;
+import java.util.stream.IntStream;
+
+/*
+ * Generates the top-level nodes of a stylesheet in chunks on the common fork-join pool, every
+ * chunk into its own buffer, and writes the buffers to the output in source order. After the
+ * transform every top-level stylerule can be written on its own, so the CSS is the same as
+ * that of one sequential pass.
+ *
+ * Only a window of chunks is generated at a time, so streaming output still does not hold
+ * all CSS at once.
+ */
+class ParallelGeneration {
+
+	//Below this many top-level nodes splitting costs more than it saves
+	static final int DEFAULT_THRESHOLD = 2048;
+	static final int CHUNK_SIZE = 256;
+	private static final int CHUNKS_PER_THREAD = 4;
+
+	/*
+	 Writes the CSS of the top-level nodes from up to, but not including, to.
+	 */
+	interface ChunkGenerator {
+		void generate(int from, int to, StringBuilder css);
+	}
+
+	private ParallelGeneration() {
+	}
+
+	static void generate(int nodes, ChunkGenerator generator, Appendable out) throws IOException {
+		int chunks = (nodes + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		int window = Math.max(2, Runtime.getRuntime().availableProcessors() * CHUNKS_PER_THREAD);
+		for (int first = 0; first < chunks; first += window) {
+			StringBuilder[] buffers = IntStream.range(first, Math.min(first + window, chunks))
+					.parallel()
+					.mapToObj(chunk -> {
+						StringBuilder css = new StringBuilder();
+						generator.generate(chunk * CHUNK_SIZE, Math.min(nodes, (chunk + 1) * CHUNK_SIZE), css);
+						return css;
+					})
+					.toArray(StringBuilder[]::new);
+			for (StringBuilder css : buffers) {
+				out.append(css);
+			}
+		}
+	}
+}
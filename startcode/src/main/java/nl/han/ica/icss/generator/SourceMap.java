@@ -0,0 +1,156 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.icss.checker.LineIndex;
+
+import java.io.IOException;
+
+/*
+ * A version 3 source map from generated CSS back to the ICSS source, filled by Generator and
+ * FlatGenerator while they write. They call map() with the CSS in their buffer just before
+ * they write a selector or declaration; the map only scans the characters added since the
+ * previous call to know the generated line and column, so the CSS is read once.
+ *
+ * Mappings are four fields: generated column, source index (always 0), source line and source
+ * column, each relative to the previous segment and written as base64 VLQ. Lines and columns
+ * start at 0; generated columns count UTF-16 characters, source columns code points.
+ */
+public class SourceMap {
+
+	private static final char[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+
+	private final LineIndex lineIndex;
+	private final StringBuilder mappings = new StringBuilder();
+	//Position in the generated CSS after the scanned characters
+	private int generatedLine = 0;
+	private int generatedColumn = 0;
+	private int scanned = 0;
+	//The previous segment, mappings are relative to it
+	private boolean firstOnLine = true;
+	private int previousColumn = 0;
+	private int previousSourceLine = 0;
+	private int previousSourceColumn = 0;
+	private int segmentCount = 0;
+
+	public SourceMap(LineIndex lineIndex) {
+		this.lineIndex = lineIndex;
+	}
+
+	/*
+	 Maps the end of the buffer to the source offset; nothing is mapped for an unknown offset.
+	 */
+	void map(CharSequence buffer, int sourceOffset) {
+		map(buffer, 0, sourceOffset);
+	}
+
+	/*
+	 Maps the column that is still to be written this many characters after the end of the
+	 buffer, like a declaration after its indentation.
+	 */
+	void map(CharSequence buffer, int ahead, int sourceOffset) {
+		scan(buffer);
+		if (sourceOffset < 0) {
+			return;
+		}
+		int sourceLine = lineIndex.getLine(sourceOffset) - 1;
+		int sourceColumn = lineIndex.getColumn(sourceOffset) - 1;
+		if (!firstOnLine) {
+			mappings.append(',');
+		}
+		int column = generatedColumn + ahead;
+		appendVLQ(column - previousColumn);
+		appendVLQ(0);
+		appendVLQ(sourceLine - previousSourceLine);
+		appendVLQ(sourceColumn - previousSourceColumn);
+		firstOnLine = false;
+		previousColumn = column;
+		previousSourceLine = sourceLine;
+		previousSourceColumn = sourceColumn;
+		segmentCount++;
+	}
+
+	/*
+	 Scans the rest of the buffer before it is emptied.
+	 */
+	void flushed(CharSequence buffer) {
+		scan(buffer);
+		scanned = 0;
+	}
+
+	private void scan(CharSequence buffer) {
+		for (int i = scanned; i < buffer.length(); i++) {
+			if (buffer.charAt(i) == '\n') {
+				mappings.append(';');
+				generatedLine++;
+				generatedColumn = 0;
+				previousColumn = 0;
+				firstOnLine = true;
+			} else {
+				generatedColumn++;
+			}
+		}
+		scanned = buffer.length();
+	}
+
+	private void appendVLQ(int value) {
+		int vlq = value < 0 ? (-value << 1) | 1 : value << 1;
+		do {
+			int digit = vlq & 0x1f;
+			vlq >>>= 5;
+			if (vlq != 0) {
+				digit |= 0x20;
+			}
+			mappings.append(BASE64[digit]);
+		} while (vlq != 0);
+	}
+
+	public int getSegmentCount() {
+		return segmentCount;
+	}
+
+	public String getMappings() {
+		return mappings.toString();
+	}
+
+	/*
+	 Writes the map as JSON, for the CSS file and the source file with these names.
+	 */
+	public void writeTo(Appendable out, String file, String source) throws IOException {
+		out.append("{\"version\":3,\"file\":");
+		appendString(out, file);
+		out.append(",\"sources\":[");
+		appendString(out, source);
+		out.append("],\"names\":[],\"mappings\":\"").append(mappings).append("\"}\n");
+	}
+
+	public String toJson(String file, String source) {
+		StringBuilder json = new StringBuilder(mappings.length() + 128);
+		try {
+			writeTo(json, file, source);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return json.toString();
+	}
+
+	private static void appendString(Appendable out, String value) throws IOException {
+		out.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\') {
+				out.append('\\').append(c);
+			} else if (c < 0x20) {
+				out.append(String.format("\\u%04x", (int) c));
+			} else {
+				out.append(c);
+			}
+		}
+		out.append('"');
+	}
+
+	/*
+	 The comment that links generated CSS to its map.
+	 */
+	public static String comment(String mapFile) {
+		return "/*# sourceMappingURL=" + mapFile + " */\n";
+	}
+}
@@ -0,0 +1,352 @@
+package nl.han.ica.icss.generator;
+
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.parser.ASTNodeFactory;
+import nl.han.ica.icss.parser.ICSSLexer;
+import nl.han.ica.icss.transforms.CompiledExpression;
+import nl.han.ica.icss.transforms.ExpressionCompiler;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.Token;
+
+import java.util.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/*
+ * Generates the CSS of one checked stylesheet for many themes. A theme overrides the values
+ * of top-level variables; every top-level assignment of an overridden variable gets the
+ * value of the theme instead of its own expression.
+ *
+ * The stylesheet is compiled once into a template: the generated text of everything that
+ * cannot change, with holes for the declarations that depend on a top-level variable,
+ * directly or through the variables of their stylerule. Their expressions are compiled by
+ * ExpressionCompiler, with every variable whose value can change in a slot of an int array.
+ * A theme only runs the top-level assignments and the assignments and declarations the holes
+ * depend on, so its cost grows with the number of dependent declarations and not with the
+ * size of the stylesheet. The output is equal to running the whole pipeline on the
+ * stylesheet with the overridden values.
+ *
+ * A variable can only be overridden if its first top-level assignment has a value.
+ *
+ * The AST is frozen and only read afterwards, so themes can be generated in parallel.
+ */
+public class ThemeGenerator {
+
+	private final Generator generator = new Generator();
+	//Index of each top-level variable in the overrides of a theme
+	private final HashMap<String, Integer> variableIndices = new HashMap<>();
+	//Type of each top-level variable, null if it cannot be overridden
+	private final ArrayList<ExpressionType> variableTypes = new ArrayList<>();
+	//Generated text around the holes: chunks[i] comes before hole i, the last one after all
+	private final String[] chunks;
+	private final String[] holeProperties;
+	private final ExpressionType[] holeTypes;
+	private final Step[] program;
+	private final int slotCount;
+	private final int constantLength;
+
+	public ThemeGenerator(AST ast) {
+		if (!ast.getErrors().isEmpty()) {
+			throw new IllegalArgumentException("Cannot generate themes for a stylesheet with errors: " + ast.getErrors());
+		}
+		ast.freeze();
+
+		TemplateBuilder builder = new TemplateBuilder();
+		ast.root.accept(builder);
+		builder.chunks.add(builder.constant.toString());
+
+		chunks = builder.chunks.toArray(new String[0]);
+		holeProperties = builder.holeProperties.toArray(new String[0]);
+		holeTypes = builder.holeTypes.toArray(new ExpressionType[0]);
+		program = builder.program.subList(0, builder.programLength).toArray(new Step[0]);
+		slotCount = builder.slotCount;
+		int length = 0;
+		for (String chunk : chunks) {
+			length += chunk.length();
+		}
+		constantLength = length;
+	}
+
+	/*
+	 Parses and checks the stylesheet once, for generating many themes.
+	 */
+	public static ThemeGenerator fromSource(String input) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		if (!pipeline.isParsed() || !pipeline.check()) {
+			throw new IllegalArgumentException("Cannot generate themes for a stylesheet with errors: " + pipeline.getErrors());
+		}
+		return new ThemeGenerator(pipeline.getAST());
+	}
+
+	/*
+	 The literal for a value written as in ICSS, like 10px, 50%, 3, #ff0000 or TRUE.
+	 */
+	public static Literal parseLiteral(String text) {
+		ICSSLexer lexer = new ICSSLexer(CharStreams.fromString(text.trim()));
+		Token token = lexer.nextToken();
+		if (lexer.nextToken().getType() != Token.EOF) {
+			throw new IllegalArgumentException("Not a literal: " + text);
+		}
+		return new ASTNodeFactory().createLiteral(token);
+	}
+
+	/*
+	 The top-level variables a theme can override.
+	 */
+	public Set<String> getVariables() {
+		Set<String> variables = new HashSet<>();
+		for (Map.Entry<String, Integer> variable : variableIndices.entrySet()) {
+			if (variableTypes.get(variable.getValue()) != null) {
+				variables.add(variable.getKey());
+			}
+		}
+		return variables;
+	}
+
+	/*
+	 The number of declarations that are evaluated again for every theme.
+	 */
+	public int getDependentDeclarationCount() {
+		return holeProperties.length;
+	}
+
+	public String generate(Map<String, Literal> theme) {
+		ThemeRun run = new ThemeRun(variableTypes.size(), slotCount, holeProperties.length);
+		for (Map.Entry<String, Literal> override : theme.entrySet()) {
+			run.override(checkOverride(override.getKey(), override.getValue()), override.getValue());
+		}
+		for (Step step : program) {
+			step.run(run);
+		}
+
+		StringBuilder css = new StringBuilder(constantLength + 32 * holeProperties.length);
+		for (int i = 0; i < holeProperties.length; i++) {
+			css.append(chunks[i]);
+			generator.appendDeclaration(css, holeProperties[i], holeTypes[i], run.holeValues[i]);
+		}
+		css.append(chunks[holeProperties.length]);
+		return css.toString();
+	}
+
+	/*
+	 Generates the themes in parallel, in the order of the stream if it has one.
+	 */
+	public Stream<String> generateAll(Stream<Map<String, Literal>> themes) {
+		return themes.parallel().map(this::generate);
+	}
+
+	public List<String> generateAll(List<Map<String, Literal>> themes) {
+		return generateAll(themes.stream()).collect(Collectors.toList());
+	}
+
+	/*
+	 The index of the overridden variable.
+	 */
+	private int checkOverride(String name, Literal value) {
+		Integer variable = variableIndices.get(name);
+		if (variable == null) {
+			throw new IllegalArgumentException("Not a top-level variable: " + name);
+		}
+		ExpressionType type = variableTypes.get(variable);
+		if (type == null) {
+			throw new IllegalArgumentException("Variable " + name + " has no value to override");
+		}
+		if (value == null) {
+			throw new IllegalArgumentException("No value for variable " + name);
+		}
+		ExpressionType valueType = compileLiteral(value).getType();
+		if (valueType != type) {
+			throw new IllegalArgumentException("Variable " + name + " needs a " + type + " value but got " + valueType);
+		}
+		return variable;
+	}
+
+	private static CompiledExpression compileLiteral(Literal value) {
+		return new ExpressionCompiler(new HANSymbolTable<>()).compile(value);
+	}
+
+	/*
+	 The slots, overrides and evaluated holes of generating one theme.
+	 */
+	private static class ThemeRun {
+		final int[] overrides;
+		final boolean[] overridden;
+		final int[] slots;
+		final int[] holeValues;
+
+		ThemeRun(int variables, int slots, int holes) {
+			this.overrides = new int[variables];
+			this.overridden = new boolean[variables];
+			this.slots = new int[slots];
+			this.holeValues = new int[holes];
+		}
+
+		void override(int variable, Literal value) {
+			overrides[variable] = compileLiteral(value).evaluate(null);
+			overridden[variable] = true;
+		}
+	}
+
+	/*
+	 One step of evaluating a theme, in document order.
+	 */
+	private interface Step {
+		void run(ThemeRun run);
+	}
+
+	/*
+	 Sets a slot to the override of its variable if the theme has one, otherwise to the
+	 value of the expression. Without an expression the slot keeps its value, like a variable
+	 in Evaluator that is assigned something without a value.
+	 */
+	private static class Assignment implements Step {
+		final int variable;
+		final int slot;
+		final CompiledExpression expression;
+
+		Assignment(int variable, int slot, CompiledExpression expression) {
+			this.variable = variable;
+			this.slot = slot;
+			this.expression = expression;
+		}
+
+		@Override
+		public void run(ThemeRun run) {
+			if (variable >= 0 && run.overridden[variable]) {
+				run.slots[slot] = run.overrides[variable];
+			} else if (expression != null) {
+				run.slots[slot] = expression.evaluate(run.slots);
+			}
+		}
+	}
+
+	private static class Hole implements Step {
+		final int index;
+		final CompiledExpression expression;
+
+		Hole(int index, CompiledExpression expression) {
+			this.index = index;
+			this.expression = expression;
+		}
+
+		@Override
+		public void run(ThemeRun run) {
+			run.holeValues[index] = expression.evaluate(run.slots);
+		}
+	}
+
+	/*
+	 Compiles the stylesheet into the chunks of the template and the steps a theme needs.
+	 Top-level variables are bound to slots, since a theme can change them. A variable of a
+	 stylerule is bound to its value if that is constant, and to a slot otherwise; an
+	 assignment without a value binds nothing, like in Evaluator. A declaration whose
+	 compiled expression is constant is written into the template.
+
+	 If-clauses are skipped: the generator writes nothing of them, and the variables they
+	 assign are not visible outside them.
+	 */
+	private class TemplateBuilder implements ASTVisitor<Void> {
+		final IHANScopeChain<String, CompiledExpression> variableValues = new HANSymbolTable<>();
+		final ExpressionCompiler expressionCompiler = new ExpressionCompiler(variableValues);
+		final StringBuilder constant = new StringBuilder();
+		final ArrayList<String> chunks = new ArrayList<>();
+		final ArrayList<String> holeProperties = new ArrayList<>();
+		final ArrayList<ExpressionType> holeTypes = new ArrayList<>();
+		final ArrayList<Step> program = new ArrayList<>();
+		//Steps after the last hole do not change the output
+		int programLength = 0;
+		int slotCount = 0;
+		//Slot of each top-level variable at the current top-level assignment
+		final HashMap<String, Integer> topLevelSlots = new HashMap<>();
+		boolean inStylerule = false;
+
+		@Override
+		public Void visitNode(ASTNode node) {
+			return null;
+		}
+
+		@Override
+		public Void visitStylesheet(Stylesheet node) {
+			variableValues.pushScope();
+			for (ASTNode child : node.body) {
+				child.accept(this);
+			}
+			variableValues.popScope();
+			return null;
+		}
+
+		@Override
+		public Void visitStylerule(Stylerule node) {
+			generator.appendSelector(constant, node);
+			variableValues.pushScope();
+			inStylerule = true;
+			for (ASTNode child : node.body) {
+				child.accept(this);
+			}
+			inStylerule = false;
+			variableValues.popScope();
+			constant.append(Generator.RULE_END);
+			return null;
+		}
+
+		@Override
+		public Void visitVariableAssignment(VariableAssignment node) {
+			String name = node.name.name;
+			CompiledExpression value = expressionCompiler.compile(node.expression);
+			boolean hasValue = value.getType() != ExpressionType.UNDEFINED;
+			if (inStylerule) {
+				if (value.isConstant() && hasValue) {
+					variableValues.declare(name, value);
+				} else if (hasValue) {
+					bindSlot(name, value.getType(), -1, value);
+				}
+				return null;
+			}
+
+			Integer variable = variableIndices.get(name);
+			if (variable == null) {
+				variable = variableTypes.size();
+				variableIndices.put(name, variable);
+				variableTypes.add(hasValue ? value.getType() : null);
+			}
+			ExpressionType type = variableTypes.get(variable);
+			if (hasValue) {
+				//An override only replaces a value of the type of the variable
+				topLevelSlots.put(name, bindSlot(name, value.getType(), value.getType() == type ? variable : -1, value));
+			} else if (type != null) {
+				//Only an override gives this assignment a value, in the slot of the variable
+				program.add(new Assignment(variable, topLevelSlots.get(name), null));
+			}
+			return null;
+		}
+
+		private int bindSlot(String name, ExpressionType type, int variable, CompiledExpression value) {
+			int slot = slotCount++;
+			program.add(new Assignment(variable, slot, value));
+			variableValues.declare(name, CompiledExpression.slot(slot, type));
+			return slot;
+		}
+
+		@Override
+		public Void visitDeclaration(Declaration node) {
+			CompiledExpression value = expressionCompiler.compile(node.expression);
+			ExpressionType type = value.getType();
+			if (value.isConstant() || type == ExpressionType.UNDEFINED || type == ExpressionType.BOOL) {
+				generator.appendDeclaration(constant, node.property.name, type, value.isConstant() ? value.evaluate(null) : 0);
+				return null;
+			}
+			chunks.add(constant.toString());
+			constant.setLength(0);
+			program.add(new Hole(holeProperties.size(), value));
+			programLength = program.size();
+			holeProperties.add(node.property.name);
+			holeTypes.add(type);
+			return null;
+		}
+	}
+}
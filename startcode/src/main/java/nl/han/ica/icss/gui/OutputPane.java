@@ -1,8 +1,9 @@
 package nl.han.ica.icss.gui;
 
 import java.io.File;
-import java.io.FileOutputStream;
-import java.io.PrintStream;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
 
 import javafx.geometry.Insets;
 import javafx.scene.control.Label;
@@ -35,9 +36,9 @@ public class OutputPane extends BorderPane {
 	}
 	public void writeToFile(File file) {
 		try {
-			PrintStream out = new PrintStream(new FileOutputStream(file));
-			out.print(this.getText());
-			out.close();
+			try (Writer out = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+				out.write(this.getText());
+			}
 		} catch(Exception exception) {
 			System.err.println(exception);
 		}
@@ -0,0 +1,68 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.ASTNode;
+import org.antlr.v4.runtime.Token;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+ * Canonical literal, property name and selector nodes, so equal leaves of an AST are one
+ * object instead of many. Nodes are looked up by token type and token text, which
+ * determine them completely. Interned nodes are shared: equal leaves can be compared with ==,
+ * so put() freezes them. Setting an error on one then fails instead of showing up in every
+ * stylesheet that uses it. The checker only sets errors on nodes that are never interned (a
+ * literal if-condition can only be TRUE or FALSE), and the evaluator replaces expressions
+ * instead of changing them.
+ *
+ * A table can be used for a single compilation or shared between compilations and threads.
+ * With a maximum size, nodes beyond the maximum are still found if they were added before,
+ * but new ones are not added anymore.
+ */
+public class ASTInternTable {
+
+	private final int maximumSize;
+	private final AtomicInteger size = new AtomicInteger();
+	private final ConcurrentHashMap<String, ASTNode>[] tables;
+
+	public ASTInternTable() {
+		this(Integer.MAX_VALUE);
+	}
+
+	@SuppressWarnings("unchecked")
+	public ASTInternTable(int maximumSize) {
+		this.maximumSize = maximumSize;
+		tables = (ConcurrentHashMap<String, ASTNode>[]) new ConcurrentHashMap<?, ?>[ICSSLexer.VOCABULARY.getMaxTokenType() + 1];
+		for (int type = 0; type < tables.length; type++) {
+			tables[type] = new ConcurrentHashMap<>();
+		}
+	}
+
+	public int size() {
+		return size.get();
+	}
+
+	/*
+	 The node interned for a token, null if there is none yet.
+	 */
+	ASTNode get(Token token, String text) {
+		return tables[token.getType()].get(text);
+	}
+
+	/*
+	 Interns a node created for a token. Returns the node that was interned first if another
+	 thread added one in the meantime, or the given node if the table is full.
+	 */
+	ASTNode put(Token token, String text, ASTNode node) {
+		if (size.get() >= maximumSize) {
+			return node;
+		}
+		node.freeze();
+		ASTNode existing = tables[token.getType()].putIfAbsent(text, node);
+		if (existing != null) {
+			return existing;
+		}
+		size.incrementAndGet();
+		return node;
+	}
+}
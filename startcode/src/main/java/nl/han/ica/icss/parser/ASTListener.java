@@ -1,24 +1,37 @@
 package nl.han.ica.icss.parser;
 
 import nl.han.ica.icss.ast.*;
-import nl.han.ica.icss.ast.literals.*;
 import nl.han.ica.icss.ast.operations.AddOperation;
 import nl.han.ica.icss.ast.operations.MultiplyOperation;
 import nl.han.ica.icss.ast.operations.SubtractOperation;
-import nl.han.ica.icss.ast.selectors.ClassSelector;
-import nl.han.ica.icss.ast.selectors.IdSelector;
-import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.datastructures.deque.HANArrayDeque;
+import nl.han.ica.datastructures.stack.IHANStack;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
-import java.util.Stack;
+import static nl.han.ica.icss.parser.ASTNodeFactory.withSourceRange;
 
 public class ASTListener extends ICSSBaseListener {
 
 	private AST ast;
-	private Stack<ASTNode> nodeStack;
+	private IHANStack<ASTNode> nodeStack;
+	private ASTNodeFactory factory;
 
 	public ASTListener() {
+		this(new HANArrayDeque<>());
+	}
+
+	public ASTListener(ASTNodeFactory factory) {
+		this(new HANArrayDeque<>(), factory);
+	}
+
+	public ASTListener(IHANStack<ASTNode> nodeStack) {
+		this(nodeStack, new ASTNodeFactory());
+	}
+
+	public ASTListener(IHANStack<ASTNode> nodeStack, ASTNodeFactory factory) {
 		ast = new AST();
-		nodeStack = new Stack<>();
+		this.nodeStack = nodeStack;
+		this.factory = factory;
 	}
 
 	public AST getAST() {
@@ -33,7 +46,7 @@ public class ASTListener extends ICSSBaseListener {
 
 	@Override
 	public void exitStylesheet(ICSSParser.StylesheetContext ctx) {
-		Stylesheet stylesheet = (Stylesheet) nodeStack.pop();
+		Stylesheet stylesheet = withSourceRange((Stylesheet) nodeStack.pop(), ctx);
 		ast.setRoot(stylesheet);
 	}
 
@@ -47,13 +60,13 @@ public class ASTListener extends ICSSBaseListener {
 
 	@Override
 	public void exitStylerule(ICSSParser.StyleruleContext ctx) {
-		Stylerule stylerule = (Stylerule) nodeStack.pop();
+		Stylerule stylerule = withSourceRange((Stylerule) nodeStack.pop(), ctx);
 		nodeStack.peek().addChild(stylerule);
 	}
 
 	@Override
 	public void enterSelector(ICSSParser.SelectorContext ctx) {
-		Selector selector = determineSelectorType(ctx.getText());
+		Selector selector = factory.createSelector(ctx.getStart());
 		nodeStack.push(selector);
 	}
 
@@ -63,16 +76,6 @@ public class ASTListener extends ICSSBaseListener {
 		nodeStack.peek().addChild(selector);
 	}
 
-	private Selector determineSelectorType(String text) {
-		if (text.startsWith("#")) {
-			return new IdSelector(text);
-		} else if (text.startsWith(".")) {
-			return new ClassSelector(text);
-		} else {
-			return new TagSelector(text);
-		}
-	}
-
 	@Override
 	public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
 		Declaration declaration = new Declaration();
@@ -81,33 +84,19 @@ public class ASTListener extends ICSSBaseListener {
 
 	@Override
 	public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
-		Declaration declaration = (Declaration) nodeStack.pop();
+		Declaration declaration = withSourceRange((Declaration) nodeStack.pop(), ctx);
 		nodeStack.peek().addChild(declaration);
 	}
 
 	@Override
 	public void enterLiterals(ICSSParser.LiteralsContext ctx) {
-		Literal literal = createLiteral(ctx.getText());
+		Literal literal = factory.createLiteral(ctx.getStart());
 		nodeStack.peek().addChild(literal);
 	}
 
-	private Literal createLiteral(String value) {
-		if (value.startsWith("#")) {
-			return new ColorLiteral(value);
-		} else if (value.endsWith("px")) {
-			return new PixelLiteral(value);
-		} else if (value.endsWith("%")) {
-			return new PercentageLiteral(value);
-		} else if ("TRUE".equals(value) || "FALSE".equals(value)) {
-			return new BoolLiteral(value);
-		} else {
-			return new ScalarLiteral(value);
-		}
-	}
-
 	@Override
 	public void enterPropertyName(ICSSParser.PropertyNameContext ctx) {
-		PropertyName propertyName = new PropertyName(ctx.getText());
+		PropertyName propertyName = factory.createPropertyName(ctx.getStart());
 		nodeStack.peek().addChild(propertyName);
 	}
 
@@ -121,13 +110,13 @@ public class ASTListener extends ICSSBaseListener {
 
 	@Override
 	public void exitVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
-		VariableAssignment variableAssignment = (VariableAssignment) nodeStack.pop();
+		VariableAssignment variableAssignment = withSourceRange((VariableAssignment) nodeStack.pop(), ctx);
 		nodeStack.peek().addChild(variableAssignment);
 	}
 
 	@Override
 	public void enterVariableReference(ICSSParser.VariableReferenceContext ctx) {
-		VariableReference variableReference = new VariableReference(ctx.getText());
+		VariableReference variableReference = withSourceRange(new VariableReference(ctx.getStart().getText()), ctx);
 		nodeStack.peek().addChild(variableReference);
 	}
 
@@ -136,16 +125,16 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void enterExpression(ICSSParser.ExpressionContext ctx) {
 		if (ctx.getChildCount() == 3) {
-			Operation operation = determineOperationType(ctx.getChild(1).getText());
+			Operation operation = determineOperationType(ctx.getChild(TerminalNode.class, 0).getSymbol().getType());
 			nodeStack.push(operation);
 		}
 	}
 
-	private Operation determineOperationType(String operator) {
+	private Operation determineOperationType(int operator) {
 		switch (operator) {
-			case "*":
+			case ICSSParser.MUL:
 				return new MultiplyOperation();
-			case "+":
+			case ICSSParser.PLUS:
 				return new AddOperation();
 			default:
 				return new SubtractOperation();
@@ -155,7 +144,7 @@ public class ASTListener extends ICSSBaseListener {
 	@Override
 	public void exitExpression(ICSSParser.ExpressionContext ctx) {
 		if (ctx.PLUS() != null || ctx.MIN() != null || ctx.MUL() != null) {
-			Operation operation = (Operation) nodeStack.pop();
+			Operation operation = withSourceRange((Operation) nodeStack.pop(), ctx);
 			nodeStack.peek().addChild(operation);
 		}
 	}
@@ -170,7 +159,7 @@ public class ASTListener extends ICSSBaseListener {
 
 	@Override
 	public void exitIfClause(ICSSParser.IfClauseContext ctx) {
-		IfClause ifClause = (IfClause) nodeStack.pop();
+		IfClause ifClause = withSourceRange((IfClause) nodeStack.pop(), ctx);
 		nodeStack.peek().addChild(ifClause);
 	}
 
@@ -182,7 +171,7 @@ public class ASTListener extends ICSSBaseListener {
 
 	@Override
 	public void exitElseClause(ICSSParser.ElseClauseContext ctx) {
-		ElseClause elseClause = (ElseClause) nodeStack.pop();
+		ElseClause elseClause = withSourceRange((ElseClause) nodeStack.pop(), ctx);
 		nodeStack.peek().addChild(elseClause);
 	}
 }
@@ -0,0 +1,109 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.PropertyName;
+import nl.han.ica.icss.ast.Selector;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.selectors.ClassSelector;
+import nl.han.ica.icss.ast.selectors.IdSelector;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+
+/*
+ * Creates the leaf nodes of the AST from single tokens.
+ * The lexer already determined what kind of literal or selector a token is,
+ * so we dispatch on the token type instead of inspecting the text, and parse
+ * numbers directly from the token text without cutting off the unit first.
+ * With an intern table, equal tokens give the same node, which has no source range
+ * since it stands for all its occurrences. Otherwise nodes get the range of their token.
+ */
+public class ASTNodeFactory {
+
+	private final ASTInternTable internTable;
+
+	public ASTNodeFactory() {
+		this(null);
+	}
+
+	public ASTNodeFactory(ASTInternTable internTable) {
+		this.internTable = internTable;
+	}
+
+	public Literal createLiteral(Token token) {
+		String text = token.getText();
+		if (internTable != null) {
+			ASTNode interned = internTable.get(token, text);
+			return (Literal) (interned != null ? interned : internTable.put(token, text, newLiteral(token, text)));
+		}
+		return withSourceRange(newLiteral(token, text), token);
+	}
+
+	private Literal newLiteral(Token token, String text) {
+		switch (token.getType()) {
+			case ICSSLexer.TRUE:
+				return new BoolLiteral(true);
+			case ICSSLexer.FALSE:
+				return new BoolLiteral(false);
+			case ICSSLexer.COLOR:
+				return new ColorLiteral(text);
+			case ICSSLexer.PIXELSIZE:
+				return new PixelLiteral(parseNumber(text, 2));
+			case ICSSLexer.PERCENTAGE:
+				return new PercentageLiteral(parseNumber(text, 1));
+			case ICSSLexer.SCALAR:
+				return new ScalarLiteral(parseNumber(text, 0));
+			default:
+				throw new IllegalArgumentException("Not a literal token: " + text);
+		}
+	}
+
+	public Selector createSelector(Token token) {
+		String text = token.getText();
+		if (internTable != null) {
+			ASTNode interned = internTable.get(token, text);
+			return (Selector) (interned != null ? interned : internTable.put(token, text, newSelector(token, text)));
+		}
+		return withSourceRange(newSelector(token, text), token);
+	}
+
+	private Selector newSelector(Token token, String text) {
+		switch (token.getType()) {
+			case ICSSLexer.ID_IDENT:
+				return new IdSelector(text);
+			case ICSSLexer.CLASS_IDENT:
+				return new ClassSelector(text);
+			default:
+				return new TagSelector(text);
+		}
+	}
+
+	public PropertyName createPropertyName(Token token) {
+		String text = token.getText();
+		if (internTable != null) {
+			ASTNode interned = internTable.get(token, text);
+			return (PropertyName) (interned != null ? interned : internTable.put(token, text, new PropertyName(text)));
+		}
+		return withSourceRange(new PropertyName(text), token);
+	}
+
+	private static <T extends ASTNode> T withSourceRange(T node, Token token) {
+		node.setSourceRange(token.getStartIndex(), token.getStopIndex());
+		return node;
+	}
+
+	/*
+	 Sets the range of the tokens of a rule on a node the builders created themselves.
+	 The stop token is not known yet while a parse listener enters a rule.
+	 */
+	static <T extends ASTNode> T withSourceRange(T node, ParserRuleContext ctx) {
+		Token stop = ctx.getStop() != null ? ctx.getStop() : ctx.getStart();
+		node.setSourceRange(ctx.getStart().getStartIndex(), stop.getStopIndex());
+		return node;
+	}
+
+	static int parseNumber(String text, int unitLength) {
+		return Integer.parseInt(text, 0, text.length() - unitLength, 10);
+	}
+}
@@ -0,0 +1,203 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+
+import nl.han.ica.datastructures.deque.HANArrayDeque;
+import nl.han.ica.datastructures.stack.IHANStack;
+import org.antlr.v4.runtime.ParserRuleContext;
+
+import static nl.han.ica.icss.parser.ASTNodeFactory.withSourceRange;
+
+/*
+ * Builds the AST while the parser runs, instead of walking a finished parse tree.
+ * Attach it with parser.addParseListener() and call parser.setBuildParseTree(false),
+ * so no parse tree is ever retained.
+ *
+ * Parse listeners only see rule contexts without their sub-rules, so nodes are built
+ * from the start token of the leaf rules. Expressions are built bottom-up on a separate
+ * stack: the parser exits an operator context of the left-recursive expression rule
+ * only after both operands have been exited, so an operation pops its two operands.
+ * A complete expression is attached to its parent when its propertyValue or ifExpression exits.
+ */
+public class DirectASTBuilder extends ICSSBaseListener {
+
+	private AST ast;
+	private IHANStack<ASTNode> nodeStack;
+	private IHANStack<Expression> expressionStack;
+	private ASTNodeFactory factory;
+
+	public DirectASTBuilder() {
+		this(new HANArrayDeque<>(), new HANArrayDeque<>());
+	}
+
+	public DirectASTBuilder(ASTNodeFactory factory) {
+		this(new HANArrayDeque<>(), new HANArrayDeque<>(), factory);
+	}
+
+	public DirectASTBuilder(IHANStack<ASTNode> nodeStack, IHANStack<Expression> expressionStack) {
+		this(nodeStack, expressionStack, new ASTNodeFactory());
+	}
+
+	public DirectASTBuilder(IHANStack<ASTNode> nodeStack, IHANStack<Expression> expressionStack, ASTNodeFactory factory) {
+		ast = new AST();
+		this.nodeStack = nodeStack;
+		this.expressionStack = expressionStack;
+		this.factory = factory;
+	}
+
+	public AST getAST() {
+		return ast;
+	}
+
+	@Override
+	public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
+		nodeStack.push(new Stylesheet());
+	}
+
+	@Override
+	public void exitStylesheet(ICSSParser.StylesheetContext ctx) {
+		ast.setRoot(withSourceRange((Stylesheet) nodeStack.pop(), ctx));
+	}
+
+	// Level 0: Rules for Style, Selectors, Declarations, Literals, and Property Names
+
+	@Override
+	public void enterStylerule(ICSSParser.StyleruleContext ctx) {
+		nodeStack.push(new Stylerule());
+	}
+
+	@Override
+	public void exitStylerule(ICSSParser.StyleruleContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitSelector(ICSSParser.SelectorContext ctx) {
+		nodeStack.peek().addChild(factory.createSelector(ctx.getStart()));
+	}
+
+	@Override
+	public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
+		nodeStack.push(new Declaration());
+	}
+
+	@Override
+	public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitPropertyName(ICSSParser.PropertyNameContext ctx) {
+		nodeStack.peek().addChild(factory.createPropertyName(ctx.getStart()));
+	}
+
+	@Override
+	public void exitBoolLiteral(ICSSParser.BoolLiteralContext ctx) {
+		expressionStack.push(factory.createLiteral(ctx.getStart()));
+	}
+
+	@Override
+	public void exitColorLiteral(ICSSParser.ColorLiteralContext ctx) {
+		expressionStack.push(factory.createLiteral(ctx.getStart()));
+	}
+
+	@Override
+	public void exitPixelLiteral(ICSSParser.PixelLiteralContext ctx) {
+		expressionStack.push(factory.createLiteral(ctx.getStart()));
+	}
+
+	@Override
+	public void exitPercentageLiteral(ICSSParser.PercentageLiteralContext ctx) {
+		expressionStack.push(factory.createLiteral(ctx.getStart()));
+	}
+
+	@Override
+	public void exitScalarLiteral(ICSSParser.ScalarLiteralContext ctx) {
+		expressionStack.push(factory.createLiteral(ctx.getStart()));
+	}
+
+	// Level 1: Handling Variable Assignments and References
+
+	@Override
+	public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+		nodeStack.push(new VariableAssignment());
+	}
+
+	@Override
+	public void exitVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitVariableReference(ICSSParser.VariableReferenceContext ctx) {
+		VariableReference variableReference = withSourceRange(new VariableReference(ctx.getStart().getText()), ctx);
+		if (ctx.getParent() instanceof ICSSParser.VariableAssignmentContext) {
+			nodeStack.peek().addChild(variableReference);
+		} else {
+			expressionStack.push(variableReference);
+		}
+	}
+
+	// Level 2: Expressions and Operations
+
+	@Override
+	public void exitExpression(ICSSParser.ExpressionContext ctx) {
+		if (ctx.PLUS() != null || ctx.MIN() != null || ctx.MUL() != null) {
+			Operation operation = withSourceRange(determineOperationType(ctx), ctx);
+			Expression rhs = expressionStack.pop();
+			operation.addChild(expressionStack.pop());
+			operation.addChild(rhs);
+			expressionStack.push(operation);
+		}
+	}
+
+	private Operation determineOperationType(ICSSParser.ExpressionContext ctx) {
+		if (ctx.MUL() != null) {
+			return new MultiplyOperation();
+		} else if (ctx.PLUS() != null) {
+			return new AddOperation();
+		} else {
+			return new SubtractOperation();
+		}
+	}
+
+	@Override
+	public void exitPropertyValue(ICSSParser.PropertyValueContext ctx) {
+		nodeStack.peek().addChild(expressionStack.pop());
+	}
+
+	// Level 3: Conditional If-Else Statements
+
+	@Override
+	public void enterIfClause(ICSSParser.IfClauseContext ctx) {
+		nodeStack.push(new IfClause());
+	}
+
+	@Override
+	public void exitIfClause(ICSSParser.IfClauseContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void enterElseClause(ICSSParser.ElseClauseContext ctx) {
+		nodeStack.push(new ElseClause());
+	}
+
+	@Override
+	public void exitElseClause(ICSSParser.ElseClauseContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitIfExpression(ICSSParser.IfExpressionContext ctx) {
+		nodeStack.peek().addChild(expressionStack.pop());
+	}
+
+	private void popIntoParent(ParserRuleContext ctx) {
+		ASTNode node = withSourceRange(nodeStack.pop(), ctx);
+		nodeStack.peek().addChild(node);
+	}
+}
@@ -0,0 +1,270 @@
+package nl.han.ica.icss.parser;
+
+import nl.han.ica.icss.ast.flat.FlatAST;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+
+import java.util.Arrays;
+
+import static nl.han.ica.icss.ast.flat.FlatAST.*;
+
+/*
+ * Builds a FlatAST while the parser runs, in the same way DirectASTBuilder builds the
+ * node classes: attach it with parser.addParseListener() and call parser.setBuildParseTree(false).
+ * Node indices are kept on two int stacks, one for open nodes and one for expressions that
+ * are built bottom-up, so no node objects are created at all.
+ */
+public class FlatASTBuilder extends ICSSBaseListener {
+
+	private FlatAST flatAST;
+	private FlatAST.Builder builder;
+	private IntStack nodeStack;
+	private IntStack expressionStack;
+
+	public FlatASTBuilder() {
+		flatAST = FlatAST.empty();
+		builder = new FlatAST.Builder();
+		nodeStack = new IntStack();
+		expressionStack = new IntStack();
+	}
+
+	public FlatAST getFlatAST() {
+		return flatAST;
+	}
+
+	@Override
+	public void enterStylesheet(ICSSParser.StylesheetContext ctx) {
+		nodeStack.push(startingAt(builder.add(STYLESHEET), ctx.getStart()));
+	}
+
+	@Override
+	public void exitStylesheet(ICSSParser.StylesheetContext ctx) {
+		int stylesheet = nodeStack.pop();
+		stoppingAt(stylesheet, ctx);
+		flatAST = builder.build(stylesheet);
+	}
+
+	// Level 0: Rules for Style, Selectors, Declarations, Literals, and Property Names
+
+	@Override
+	public void enterStylerule(ICSSParser.StyleruleContext ctx) {
+		nodeStack.push(startingAt(builder.add(STYLERULE), ctx.getStart()));
+	}
+
+	@Override
+	public void exitStylerule(ICSSParser.StyleruleContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitSelector(ICSSParser.SelectorContext ctx) {
+		Token token = ctx.getStart();
+		byte kind;
+		switch (token.getType()) {
+			case ICSSLexer.ID_IDENT:
+				kind = ID_SELECTOR;
+				break;
+			case ICSSLexer.CLASS_IDENT:
+				kind = CLASS_SELECTOR;
+				break;
+			default:
+				kind = TAG_SELECTOR;
+		}
+		builder.appendChild(nodeStack.peek(), spanning(builder.add(kind, token.getText()), token));
+	}
+
+	@Override
+	public void enterDeclaration(ICSSParser.DeclarationContext ctx) {
+		nodeStack.push(startingAt(builder.add(DECLARATION), ctx.getStart()));
+	}
+
+	@Override
+	public void exitDeclaration(ICSSParser.DeclarationContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitPropertyName(ICSSParser.PropertyNameContext ctx) {
+		builder.appendChild(nodeStack.peek(), spanning(builder.add(PROPERTY_NAME, ctx.getStart().getText()), ctx.getStart()));
+	}
+
+	@Override
+	public void exitBoolLiteral(ICSSParser.BoolLiteralContext ctx) {
+		expressionStack.push(spanning(addLiteral(ctx.getStart()), ctx.getStart()));
+	}
+
+	@Override
+	public void exitColorLiteral(ICSSParser.ColorLiteralContext ctx) {
+		expressionStack.push(spanning(addLiteral(ctx.getStart()), ctx.getStart()));
+	}
+
+	@Override
+	public void exitPixelLiteral(ICSSParser.PixelLiteralContext ctx) {
+		expressionStack.push(spanning(addLiteral(ctx.getStart()), ctx.getStart()));
+	}
+
+	@Override
+	public void exitPercentageLiteral(ICSSParser.PercentageLiteralContext ctx) {
+		expressionStack.push(spanning(addLiteral(ctx.getStart()), ctx.getStart()));
+	}
+
+	@Override
+	public void exitScalarLiteral(ICSSParser.ScalarLiteralContext ctx) {
+		expressionStack.push(spanning(addLiteral(ctx.getStart()), ctx.getStart()));
+	}
+
+	private int addLiteral(Token token) {
+		String text = token.getText();
+		switch (token.getType()) {
+			case ICSSLexer.TRUE:
+				return builder.add(BOOL_LITERAL, true);
+			case ICSSLexer.FALSE:
+				return builder.add(BOOL_LITERAL, false);
+			case ICSSLexer.COLOR:
+				return builder.add(COLOR_LITERAL, text);
+			case ICSSLexer.PIXELSIZE:
+				return builder.add(PIXEL_LITERAL, ASTNodeFactory.parseNumber(text, 2));
+			case ICSSLexer.PERCENTAGE:
+				return builder.add(PERCENTAGE_LITERAL, ASTNodeFactory.parseNumber(text, 1));
+			case ICSSLexer.SCALAR:
+				return builder.add(SCALAR_LITERAL, ASTNodeFactory.parseNumber(text, 0));
+			default:
+				throw new IllegalArgumentException("Not a literal token: " + text);
+		}
+	}
+
+	// Level 1: Handling Variable Assignments and References
+
+	@Override
+	public void enterVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+		nodeStack.push(startingAt(builder.add(VARIABLE_ASSIGNMENT), ctx.getStart()));
+	}
+
+	@Override
+	public void exitVariableAssignment(ICSSParser.VariableAssignmentContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitVariableReference(ICSSParser.VariableReferenceContext ctx) {
+		int variableReference = spanning(builder.add(VARIABLE_REFERENCE, ctx.getStart().getText()), ctx.getStart());
+		if (ctx.getParent() instanceof ICSSParser.VariableAssignmentContext) {
+			builder.appendChild(nodeStack.peek(), variableReference);
+		} else {
+			expressionStack.push(variableReference);
+		}
+	}
+
+	// Level 2: Expressions and Operations
+
+	@Override
+	public void exitExpression(ICSSParser.ExpressionContext ctx) {
+		if (ctx.PLUS() != null || ctx.MIN() != null || ctx.MUL() != null) {
+			int operation = spanning(builder.add(determineOperationKind(ctx)), ctx);
+			int rhs = expressionStack.pop();
+			builder.appendChild(operation, expressionStack.pop());
+			builder.appendChild(operation, rhs);
+			expressionStack.push(operation);
+		}
+	}
+
+	private byte determineOperationKind(ICSSParser.ExpressionContext ctx) {
+		if (ctx.MUL() != null) {
+			return MULTIPLY_OPERATION;
+		} else if (ctx.PLUS() != null) {
+			return ADD_OPERATION;
+		} else {
+			return SUBTRACT_OPERATION;
+		}
+	}
+
+	@Override
+	public void exitPropertyValue(ICSSParser.PropertyValueContext ctx) {
+		builder.appendChild(nodeStack.peek(), expressionStack.pop());
+	}
+
+	// Level 3: Conditional If-Else Statements
+
+	@Override
+	public void enterIfClause(ICSSParser.IfClauseContext ctx) {
+		nodeStack.push(startingAt(builder.add(IF_CLAUSE), ctx.getStart()));
+	}
+
+	@Override
+	public void exitIfClause(ICSSParser.IfClauseContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void enterElseClause(ICSSParser.ElseClauseContext ctx) {
+		nodeStack.push(startingAt(builder.add(ELSE_CLAUSE), ctx.getStart()));
+	}
+
+	@Override
+	public void exitElseClause(ICSSParser.ElseClauseContext ctx) {
+		popIntoParent(ctx);
+	}
+
+	@Override
+	public void exitIfExpression(ICSSParser.IfExpressionContext ctx) {
+		builder.appendChild(nodeStack.peek(), expressionStack.pop());
+	}
+
+	/*
+	 The stop token of a rule is only known when the listener exits it.
+	 */
+	private int startingAt(int node, Token token) {
+		builder.setSourceStart(node, token.getStartIndex());
+		return node;
+	}
+
+	private void stoppingAt(int node, ParserRuleContext ctx) {
+		Token stop = ctx.getStop() != null ? ctx.getStop() : ctx.getStart();
+		builder.setSourceStop(node, stop.getStopIndex());
+	}
+
+	private int spanning(int node, Token token) {
+		builder.setSourceStart(node, token.getStartIndex());
+		builder.setSourceStop(node, token.getStopIndex());
+		return node;
+	}
+
+	private int spanning(int node, ParserRuleContext ctx) {
+		startingAt(node, ctx.getStart());
+		stoppingAt(node, ctx);
+		return node;
+	}
+
+	private void popIntoParent(ParserRuleContext ctx) {
+		int node = nodeStack.pop();
+		stoppingAt(node, ctx);
+		builder.appendChild(nodeStack.peek(), node);
+	}
+
+	/*
+	 Stack of node indices, without boxing them.
+	 */
+	private static class IntStack {
+		private int[] items = new int[16];
+		private int size = 0;
+
+		void push(int item) {
+			if (size == items.length) {
+				items = Arrays.copyOf(items, size * 2);
+			}
+			items[size++] = item;
+		}
+		int pop() {
+			if (size == 0) {
+				throw new IllegalStateException("Stack is empty");
+			}
+			return items[--size];
+		}
+		int peek() {
+			if (size == 0) {
+				throw new IllegalStateException("Stack is empty");
+			}
+			return items[size - 1];
+		}
+	}
+}
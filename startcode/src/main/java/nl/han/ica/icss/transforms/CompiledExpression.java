@@ -0,0 +1,63 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+/*
+ * An expression compiled by ExpressionCompiler: a tree of closures that evaluates to an int
+ * and a type that is known without evaluating it. Pixels, percentages and scalars evaluate
+ * to their number, booleans to 1 or 0 and colors to 0xrrggbb. An UNDEFINED expression is one
+ * Evaluator reduces to null; its value means nothing.
+ *
+ * Variables are read from the slots passed to evaluate(), evaluating allocates nothing.
+ */
+public final class CompiledExpression {
+
+    @FunctionalInterface
+    interface Code {
+        int evaluate(int[] slots);
+    }
+
+    private final ExpressionType type;
+    private final Code code;
+    private final boolean constant;
+
+    private CompiledExpression(ExpressionType type, Code code, boolean constant) {
+        this.type = type;
+        this.code = code;
+        this.constant = constant;
+    }
+
+    static CompiledExpression constant(ExpressionType type, int value) {
+        return new CompiledExpression(type, slots -> value, true);
+    }
+
+    static CompiledExpression of(ExpressionType type, Code code) {
+        return new CompiledExpression(type, code, false);
+    }
+
+    /*
+     An expression that reads a slot, how a variable is bound while compiling.
+     */
+    public static CompiledExpression slot(int index, ExpressionType type) {
+        return new CompiledExpression(type, slots -> slots[index], false);
+    }
+
+    public ExpressionType getType() {
+        return type;
+    }
+
+    /*
+     Whether the value is the same for all slots, so evaluate() may be given null.
+     */
+    public boolean isConstant() {
+        return constant;
+    }
+
+    public int evaluate(int[] slots) {
+        return code.evaluate(slots);
+    }
+
+    Code getCode() {
+        return code;
+    }
+}
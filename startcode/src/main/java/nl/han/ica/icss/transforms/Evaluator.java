@@ -1,57 +1,102 @@
 package nl.han.ica.icss.transforms;
 
-import nl.han.ica.datastructures.linkedList.HANLinkedList;
-import nl.han.ica.datastructures.linkedList.IHANLinkedList;
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
 import nl.han.ica.icss.ast.*;
 import nl.han.ica.icss.ast.literals.*;
-import nl.han.ica.icss.ast.operations.AddOperation;
-import nl.han.ica.icss.ast.operations.MultiplyOperation;
-import nl.han.ica.icss.ast.types.ExpressionType;
-import nl.han.ica.icss.checker.SemanticError;
-
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
 
 public class Evaluator implements Transform {
 
-    private IHANLinkedList<HashMap<String, Literal>> variableValues;
+    private IHANScopeChain<String, Literal> variableValues;
+    private final NodeEvaluator nodeEvaluator = new NodeEvaluator();
+    private final ExpressionEvaluator expressionEvaluator;
 
     public Evaluator() {
-        variableValues = new HANLinkedList<>();
+        this(new HANSymbolTable<>());
+    }
+
+    public Evaluator(IHANScopeChain<String, Literal> variableValues) {
+        this.variableValues = variableValues;
+        this.expressionEvaluator = new ExpressionEvaluator(variableValues);
     }
 
+    /*
+     Changes the AST in place, so a frozen AST is refused; PersistentEvaluator evaluates those.
+     */
     @Override
     public void apply(AST ast) {
-        variableValues.addFirst(new HashMap<>());
+        if (ast.root.isFrozen()) {
+            throw new UnsupportedOperationException("A frozen AST can only be evaluated by PersistentEvaluator");
+        }
+        variableValues.pushScope();
         traverse(ast.root);
-        variableValues.removeFirst();
+        variableValues.popScope();
     }
 
     private void traverse(ASTNode node) {
-        if (node instanceof VariableAssignment) {
-            handleVariableAssignment((VariableAssignment) node);
-        } else if (node instanceof IfClause) {
-            handleIfElseClause((IfClause) node);
-        } else if (node instanceof Declaration) {
-            handleDeclaration((Declaration) node);
+        node.accept(nodeEvaluator);
+    }
+
+    private void traverseChildren(ASTNode node) {
+        for (int i = 0; i < node.getChildCount(); i++) {
+            traverse(node.getChild(i));
+        }
+    }
+
+    /*
+     Evaluates each node kind and then its children. Stylerules and if-clauses
+     open a new scope around their children.
+     */
+    private class NodeEvaluator implements ASTVisitor<Void> {
+
+        @Override
+        public Void visitNode(ASTNode node) {
+            traverseChildren(node);
+            return null;
+        }
+
+        @Override
+        public Void visitStylerule(Stylerule node) {
+            variableValues.pushScope();
+            traverseChildren(node);
+            variableValues.popScope();
+            return null;
+        }
+
+        @Override
+        public Void visitIfClause(IfClause node) {
+            variableValues.pushScope();
+            handleIfElseClause(node);
+            traverseChildren(node);
+            variableValues.popScope();
+            return null;
+        }
+
+        @Override
+        public Void visitVariableAssignment(VariableAssignment node) {
+            handleVariableAssignment(node);
+            traverseChildren(node);
+            return null;
         }
 
-        for (ASTNode child : node.getChildren()) {
-            traverse(child);
+        @Override
+        public Void visitDeclaration(Declaration node) {
+            handleDeclaration(node);
+            traverseChildren(node);
+            return null;
         }
     }
 
     private void handleVariableAssignment(VariableAssignment assignment) {
-        Literal literalValue = evaluateExpression(assignment.expression);
+        Literal literalValue = expressionEvaluator.evaluate(assignment.expression);
         if (literalValue != null) {
-            variableValues.getFirst().put(assignment.name.name, literalValue);
+            variableValues.declare(assignment.name.name, literalValue);
             assignment.expression = literalValue;
         }
     }
 
     private void handleIfElseClause(IfClause ifClause) {
-        Literal conditionalValue = evaluateExpression(ifClause.conditionalExpression);
+        Literal conditionalValue = expressionEvaluator.evaluate(ifClause.conditionalExpression);
         if (conditionalValue instanceof BoolLiteral) {
             boolean condition = ((BoolLiteral) conditionalValue).value;
             if (condition) {
@@ -73,84 +118,12 @@ public class Evaluator implements Transform {
     }
 
     private void handleDeclaration(Declaration declaration) {
-        String propertyName = declaration.property.name;
-        ExpressionType expectedType = initializePropertyTypeMap().get(propertyName);
-        Literal actualValue = evaluateExpression(declaration.expression);
-
-        if (expectedType != null && actualValue != null) {
-            ExpressionType actualType = determineLiteralType(actualValue);
-            if (actualType != expectedType) {
-                declaration.setError(new SemanticError("Type mismatch for property '" +
-                        propertyName + "': expected " + expectedType + " but got " + actualType).toString());
-            }
+        Literal actualValue = expressionEvaluator.evaluate(declaration.expression);
+        String error = expressionEvaluator.checkDeclaration(declaration.property.name, actualValue);
+        if (error != null) {
+            declaration.setError(error);
         }
 
         declaration.expression = actualValue;
     }
-
-    private Literal evaluateExpression(Expression expression) {
-        if (expression instanceof Literal) {
-            return (Literal) expression;
-        } else if (expression instanceof VariableReference) {
-            return evaluateVariableReference((VariableReference) expression);
-        } else if (expression instanceof Operation) {
-            return evaluateOperation((Operation) expression);
-        }
-        return null;
-    }
-
-    private Literal evaluateVariableReference(VariableReference varRef) {
-        HashMap<String, Literal> currentScope = variableValues.getFirst();
-        return currentScope.get(varRef.name);
-    }
-
-    private Literal evaluateOperation(Operation operation) {
-        Literal leftValue = evaluateExpression(operation.lhs);
-        Literal rightValue = evaluateExpression(operation.rhs);
-
-        if (operation instanceof AddOperation) {
-            if (leftValue instanceof PixelLiteral && rightValue instanceof PixelLiteral) {
-                int result = ((PixelLiteral) leftValue).value + ((PixelLiteral) rightValue).value;
-                return new PixelLiteral(result);
-            } else if (leftValue instanceof ScalarLiteral && rightValue instanceof ScalarLiteral) {
-                int result = ((ScalarLiteral) leftValue).value + ((ScalarLiteral) rightValue).value;
-                return new ScalarLiteral(result);
-            } else if (leftValue instanceof PercentageLiteral && rightValue instanceof PercentageLiteral) {
-                int result = ((PercentageLiteral) leftValue).value + ((PercentageLiteral) rightValue).value;
-                return new PercentageLiteral(result);
-            }
-        } else if (operation instanceof MultiplyOperation) {
-            if (leftValue instanceof PixelLiteral && rightValue instanceof ScalarLiteral) {
-                int result = ((PixelLiteral) leftValue).value * ((ScalarLiteral) rightValue).value;
-                return new PixelLiteral(result);
-            } else if (leftValue instanceof ScalarLiteral && rightValue instanceof PixelLiteral) {
-                int result = ((ScalarLiteral) leftValue).value * ((PixelLiteral) rightValue).value;
-                return new PixelLiteral(result);
-            } else if (leftValue instanceof PercentageLiteral && rightValue instanceof ScalarLiteral) {
-                int result = ((PercentageLiteral) leftValue).value * ((ScalarLiteral) rightValue).value / 100;
-                return new PixelLiteral(result);
-            }
-        }
-        return null;
-    }
-
-    private HashMap<String, ExpressionType> initializePropertyTypeMap() {
-        HashMap<String, ExpressionType> map = new HashMap<>();
-        map.put("width", ExpressionType.PIXEL);
-        map.put("height", ExpressionType.PIXEL);
-        map.put("color", ExpressionType.COLOR);
-        map.put("background-color", ExpressionType.COLOR);
-        return map;
-    }
-
-    private ExpressionType determineLiteralType(Literal literal) {
-        if (literal instanceof PixelLiteral) {
-            return ExpressionType.PIXEL;
-        } else if (literal instanceof ColorLiteral) {
-            return ExpressionType.COLOR;
-        } else if (literal instanceof BoolLiteral) {
-            return ExpressionType.BOOL;
-        }
-        return null;
-    }
-}
\ No newline at end of file
+}
@@ -0,0 +1,129 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import static nl.han.ica.icss.ast.types.ExpressionType.*;
+
+/*
+ * Compiles expressions for evaluating them many times, with the semantics of
+ * ExpressionEvaluator. The type of every operation follows from the types of its operands,
+ * so it is decided while compiling: the closures only do the arithmetic on ints, and an
+ * operation that Evaluator reduces to null compiles to a constant UNDEFINED. Operations on
+ * constants are folded.
+ *
+ * Variables are resolved while compiling, to whatever they are bound to in the scope chain:
+ * a slot, or a constant when its value is known. A variable that is not bound is UNDEFINED.
+ */
+public class ExpressionCompiler implements ASTVisitor<CompiledExpression> {
+
+    private static final CompiledExpression NO_VALUE = CompiledExpression.constant(UNDEFINED, 0);
+
+    private final IHANScopeChain<String, CompiledExpression> variables;
+
+    public ExpressionCompiler(IHANScopeChain<String, CompiledExpression> variables) {
+        this.variables = variables;
+    }
+
+    public CompiledExpression compile(Expression expression) {
+        if (expression == null) {
+            return NO_VALUE;
+        }
+        return expression.accept(this);
+    }
+
+    /*
+     The packed value of a color, which must be written like in ICSS: # and six lowercase hex digits.
+     */
+    public static int packColor(String color) {
+        if (color.length() != 7 || color.charAt(0) != '#') {
+            throw new IllegalArgumentException("Not an ICSS color: " + color);
+        }
+        int value = 0;
+        for (int i = 1; i < 7; i++) {
+            int digit = Character.digit(color.charAt(i), 16);
+            if (digit < 0 || Character.isUpperCase(color.charAt(i))) {
+                throw new IllegalArgumentException("Not an ICSS color: " + color);
+            }
+            value = value << 4 | digit;
+        }
+        return value;
+    }
+
+    @Override
+    public CompiledExpression visitNode(ASTNode node) {
+        return NO_VALUE;
+    }
+
+    @Override
+    public CompiledExpression visitPixelLiteral(PixelLiteral node) {
+        return CompiledExpression.constant(PIXEL, node.value);
+    }
+
+    @Override
+    public CompiledExpression visitPercentageLiteral(PercentageLiteral node) {
+        return CompiledExpression.constant(PERCENTAGE, node.value);
+    }
+
+    @Override
+    public CompiledExpression visitScalarLiteral(ScalarLiteral node) {
+        return CompiledExpression.constant(SCALAR, node.value);
+    }
+
+    @Override
+    public CompiledExpression visitColorLiteral(ColorLiteral node) {
+        return CompiledExpression.constant(COLOR, packColor(node.value));
+    }
+
+    @Override
+    public CompiledExpression visitBoolLiteral(BoolLiteral node) {
+        return CompiledExpression.constant(BOOL, node.value ? 1 : 0);
+    }
+
+    @Override
+    public CompiledExpression visitVariableReference(VariableReference node) {
+        CompiledExpression value = variables.resolve(node.name);
+        return value != null ? value : NO_VALUE;
+    }
+
+    @Override
+    public CompiledExpression visitAddOperation(AddOperation operation) {
+        CompiledExpression left = compile(operation.lhs);
+        CompiledExpression right = compile(operation.rhs);
+        ExpressionType type = left.getType();
+
+        if (type == right.getType() && (type == PIXEL || type == SCALAR || type == PERCENTAGE)) {
+            CompiledExpression.Code lhs = left.getCode();
+            CompiledExpression.Code rhs = right.getCode();
+            return combine(type, left, right, slots -> lhs.evaluate(slots) + rhs.evaluate(slots));
+        }
+        return NO_VALUE;
+    }
+
+    @Override
+    public CompiledExpression visitMultiplyOperation(MultiplyOperation operation) {
+        CompiledExpression left = compile(operation.lhs);
+        CompiledExpression right = compile(operation.rhs);
+        CompiledExpression.Code lhs = left.getCode();
+        CompiledExpression.Code rhs = right.getCode();
+
+        if (left.getType() == PIXEL && right.getType() == SCALAR || left.getType() == SCALAR && right.getType() == PIXEL) {
+            return combine(PIXEL, left, right, slots -> lhs.evaluate(slots) * rhs.evaluate(slots));
+        } else if (left.getType() == PERCENTAGE && right.getType() == SCALAR) {
+            return combine(PIXEL, left, right, slots -> lhs.evaluate(slots) * rhs.evaluate(slots) / 100);
+        }
+        return NO_VALUE;
+    }
+
+    private static CompiledExpression combine(ExpressionType type, CompiledExpression left, CompiledExpression right,
+                                              CompiledExpression.Code code) {
+        if (left.isConstant() && right.isConstant()) {
+            return CompiledExpression.constant(type, code.evaluate(null));
+        }
+        return CompiledExpression.of(type, code);
+    }
+}
@@ -0,0 +1,141 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+
+import java.util.HashMap;
+
+/*
+ * Reduces expressions to literals with the variable values in scope, and checks the
+ * value of a declaration against its property. Shared by Evaluator and PersistentEvaluator,
+ * it never changes the expressions it evaluates.
+ */
+class ExpressionEvaluator implements ASTVisitor<Literal> {
+
+    private static final HashMap<String, ExpressionType> PROPERTY_TYPES = new HashMap<>();
+    static {
+        PROPERTY_TYPES.put("width", ExpressionType.PIXEL);
+        PROPERTY_TYPES.put("height", ExpressionType.PIXEL);
+        PROPERTY_TYPES.put("color", ExpressionType.COLOR);
+        PROPERTY_TYPES.put("background-color", ExpressionType.COLOR);
+    }
+
+    private final IHANScopeChain<String, Literal> variableValues;
+    private final LiteralTyper literalTyper = new LiteralTyper();
+
+    ExpressionEvaluator(IHANScopeChain<String, Literal> variableValues) {
+        this.variableValues = variableValues;
+    }
+
+    /*
+     The literal value of an expression, null if it cannot be evaluated.
+     */
+    Literal evaluate(Expression expression) {
+        if (expression == null) {
+            return null;
+        }
+        return expression.accept(this);
+    }
+
+    /*
+     Description of the error for a declaration with this value, null if there is none.
+     */
+    String checkDeclaration(String propertyName, Literal value) {
+        ExpressionType expectedType = PROPERTY_TYPES.get(propertyName);
+        if (expectedType != null && value != null) {
+            ExpressionType actualType = value.accept(literalTyper);
+            //Like the checker, sizes can be given in pixels or as a percentage
+            if (actualType != expectedType && !(expectedType == ExpressionType.PIXEL && actualType == ExpressionType.PERCENTAGE)) {
+                return "Type mismatch for property '" + propertyName + "': expected " + expectedType + " but got " + actualType;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Literal visitNode(ASTNode node) {
+        return null;
+    }
+
+    @Override
+    public Literal visitLiteral(Literal node) {
+        return node;
+    }
+
+    @Override
+    public Literal visitVariableReference(VariableReference node) {
+        return variableValues.resolve(node.name);
+    }
+
+    @Override
+    public Literal visitAddOperation(AddOperation operation) {
+        Literal leftValue = evaluate(operation.lhs);
+        Literal rightValue = evaluate(operation.rhs);
+
+        if (leftValue instanceof PixelLiteral && rightValue instanceof PixelLiteral) {
+            int result = ((PixelLiteral) leftValue).value + ((PixelLiteral) rightValue).value;
+            return new PixelLiteral(result);
+        } else if (leftValue instanceof ScalarLiteral && rightValue instanceof ScalarLiteral) {
+            int result = ((ScalarLiteral) leftValue).value + ((ScalarLiteral) rightValue).value;
+            return new ScalarLiteral(result);
+        } else if (leftValue instanceof PercentageLiteral && rightValue instanceof PercentageLiteral) {
+            int result = ((PercentageLiteral) leftValue).value + ((PercentageLiteral) rightValue).value;
+            return new PercentageLiteral(result);
+        }
+        return null;
+    }
+
+    @Override
+    public Literal visitMultiplyOperation(MultiplyOperation operation) {
+        Literal leftValue = evaluate(operation.lhs);
+        Literal rightValue = evaluate(operation.rhs);
+
+        if (leftValue instanceof PixelLiteral && rightValue instanceof ScalarLiteral) {
+            int result = ((PixelLiteral) leftValue).value * ((ScalarLiteral) rightValue).value;
+            return new PixelLiteral(result);
+        } else if (leftValue instanceof ScalarLiteral && rightValue instanceof PixelLiteral) {
+            int result = ((ScalarLiteral) leftValue).value * ((PixelLiteral) rightValue).value;
+            return new PixelLiteral(result);
+        } else if (leftValue instanceof PercentageLiteral && rightValue instanceof ScalarLiteral) {
+            int result = ((PercentageLiteral) leftValue).value * ((ScalarLiteral) rightValue).value / 100;
+            return new PixelLiteral(result);
+        }
+        return null;
+    }
+
+    /*
+     Type of an evaluated literal as far as the property checks are concerned,
+     null for the others.
+     */
+    private static class LiteralTyper implements ASTVisitor<ExpressionType> {
+
+        @Override
+        public ExpressionType visitNode(ASTNode node) {
+            return null;
+        }
+
+        @Override
+        public ExpressionType visitPixelLiteral(PixelLiteral node) {
+            return ExpressionType.PIXEL;
+        }
+
+        @Override
+        public ExpressionType visitPercentageLiteral(PercentageLiteral node) {
+            return ExpressionType.PERCENTAGE;
+        }
+
+        @Override
+        public ExpressionType visitColorLiteral(ColorLiteral node) {
+            return ExpressionType.COLOR;
+        }
+
+        @Override
+        public ExpressionType visitBoolLiteral(BoolLiteral node) {
+            return ExpressionType.BOOL;
+        }
+    }
+}
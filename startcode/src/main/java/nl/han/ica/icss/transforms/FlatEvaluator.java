@@ -0,0 +1,290 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.ast.flat.FlatAST;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.checker.SemanticError;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+import static nl.han.ica.icss.ast.flat.FlatAST.*;
+
+/*
+ * The transformation of Evaluator on a FlatAST. The arrays of a FlatAST cannot be changed
+ * in place, so the changes Evaluator makes to the nodes are recorded first: the literal
+ * that replaces the expression of a declaration, assignment or if-clause, and the removed
+ * else-clauses. apply() then copies the tree with those changes into a new FlatAST.
+ *
+ * Evaluated values are packed in a long: the literal kind in the high half and the
+ * payload of the literal in the low half.
+ */
+public class FlatEvaluator {
+
+    //Evaluates to nothing, Evaluator uses null
+    private static final long NO_VALUE = -1L;
+    //The expression of the node is unchanged
+    private static final long NOT_REPLACED = -2L;
+
+    private IHANScopeChain<String, Long> variableValues;
+    private FlatAST ast;
+    private long[] replacements;
+    private boolean[] removedElseClauses;
+    private HashMap<Integer, SemanticError> errors;
+
+    public FlatEvaluator() {
+        this(new HANSymbolTable<>());
+    }
+
+    public FlatEvaluator(IHANScopeChain<String, Long> variableValues) {
+        this.variableValues = variableValues;
+    }
+
+    /*
+     Returns the transformed AST, the given AST is left as it is.
+     */
+    public FlatAST apply(FlatAST ast) {
+        this.ast = ast;
+        replacements = new long[ast.size()];
+        Arrays.fill(replacements, NOT_REPLACED);
+        removedElseClauses = new boolean[ast.size()];
+        errors = new HashMap<>();
+
+        variableValues.pushScope();
+        traverse(ast.getRoot());
+        variableValues.popScope();
+
+        FlatAST.Builder builder = new FlatAST.Builder(ast);
+        return builder.build(copy(builder, ast.getRoot()));
+    }
+
+    private void traverse(int node) {
+        switch (ast.getKind(node)) {
+            case STYLERULE:
+                variableValues.pushScope();
+                traverseChildren(node);
+                variableValues.popScope();
+                break;
+            case IF_CLAUSE:
+                variableValues.pushScope();
+                handleIfElseClause(node);
+                traverseChildren(node);
+                variableValues.popScope();
+                break;
+            case VARIABLE_ASSIGNMENT:
+                handleVariableAssignment(node);
+                break;
+            case DECLARATION:
+                handleDeclaration(node);
+                break;
+            case STYLESHEET:
+            case ELSE_CLAUSE:
+                traverseChildren(node);
+                break;
+            default:
+                //Expressions, property names and selectors have nothing to evaluate
+        }
+    }
+
+    private void traverseChildren(int node) {
+        for (int child = ast.getFirstChild(node); child != NO_NODE; child = ast.getNextSibling(node, child)) {
+            if (!isRemoved(node, child)) {
+                traverse(child);
+            }
+        }
+    }
+
+    private boolean isRemoved(int parent, int child) {
+        return ast.getKind(child) == ELSE_CLAUSE && removedElseClauses[parent];
+    }
+
+    /*
+     The expression child of a declaration, variable assignment or if-clause.
+     */
+    private int expressionOf(int node) {
+        int first = ast.getFirstChild(node);
+        if (ast.getKind(node) == IF_CLAUSE || first == NO_NODE) {
+            return first;
+        }
+        return ast.getNextSibling(node, first);
+    }
+
+    /*
+     Value of the current expression of a node: the replacing literal if there is one.
+     */
+    private long evaluateExpressionOf(int node) {
+        long replacement = replacements[node];
+        if (replacement != NOT_REPLACED) {
+            return replacement;
+        }
+        return evaluateExpression(expressionOf(node));
+    }
+
+    private void handleVariableAssignment(int assignment) {
+        long literalValue = evaluateExpressionOf(assignment);
+        if (literalValue != NO_VALUE) {
+            variableValues.declare(ast.getText(ast.getFirstChild(assignment)), literalValue);
+            replacements[assignment] = literalValue;
+        }
+    }
+
+    private void handleIfElseClause(int ifClause) {
+        long conditionalValue = evaluateExpressionOf(ifClause);
+        if (kindOf(conditionalValue) == BOOL_LITERAL) {
+            int condition = expressionOf(ifClause);
+            int elseClause = NO_NODE;
+            for (int child = ast.getNextSibling(ifClause, condition); child != NO_NODE; child = ast.getNextSibling(ifClause, child)) {
+                if (ast.getKind(child) == ELSE_CLAUSE) {
+                    elseClause = child;
+                }
+            }
+
+            if (valueOf(conditionalValue) != 0) {
+                for (int child = ast.getNextSibling(ifClause, condition); child != NO_NODE; child = ast.getNextSibling(ifClause, child)) {
+                    if (child != elseClause) {
+                        traverse(child);
+                        removedElseClauses[ifClause] = true;
+                    }
+                }
+            } else if (elseClause != NO_NODE && !removedElseClauses[ifClause]) {
+                for (int child = ast.getFirstChild(elseClause); child != NO_NODE; child = ast.getNextSibling(elseClause, child)) {
+                    traverse(child);
+                    removedElseClauses[ifClause] = true;
+                }
+            }
+            replacements[ifClause] = conditionalValue;
+        }
+    }
+
+    private void handleDeclaration(int declaration) {
+        String propertyName = ast.getText(ast.getFirstChild(declaration));
+        ExpressionType expectedType = expectedPropertyType(propertyName);
+        long actualValue = evaluateExpressionOf(declaration);
+
+        if (expectedType != null && actualValue != NO_VALUE) {
+            ExpressionType actualType = determineLiteralType(kindOf(actualValue));
+            //Like the checker, sizes can be given in pixels or as a percentage
+            if (actualType != expectedType && !(expectedType == ExpressionType.PIXEL && actualType == ExpressionType.PERCENTAGE)) {
+                errors.put(declaration, new SemanticError("Type mismatch for property '" +
+                        propertyName + "': expected " + expectedType + " but got " + actualType,
+                        ast.getSourceStart(declaration)));
+            }
+        }
+
+        replacements[declaration] = actualValue;
+    }
+
+    private long evaluateExpression(int expression) {
+        if (expression == NO_NODE) {
+            return NO_VALUE;
+        }
+        byte kind = ast.getKind(expression);
+        switch (kind) {
+            case VARIABLE_REFERENCE:
+                Long value = variableValues.resolve(ast.getText(expression));
+                return value != null ? value : NO_VALUE;
+            case ADD_OPERATION:
+                return evaluateAddOperation(expression);
+            case MULTIPLY_OPERATION:
+                return evaluateMultiplyOperation(expression);
+            case SUBTRACT_OPERATION:
+                return NO_VALUE;
+            default:
+                return isLiteral(kind) ? literal(kind, ast.getValue(expression)) : NO_VALUE;
+        }
+    }
+
+    private long evaluateAddOperation(int operation) {
+        long leftValue = evaluateExpression(ast.getFirstChild(operation));
+        long rightValue = evaluateExpression(ast.getChild(operation, 1));
+        byte left = kindOf(leftValue);
+
+        if (left == kindOf(rightValue)
+                && (left == PIXEL_LITERAL || left == SCALAR_LITERAL || left == PERCENTAGE_LITERAL)) {
+            return literal(left, valueOf(leftValue) + valueOf(rightValue));
+        }
+        return NO_VALUE;
+    }
+
+    private long evaluateMultiplyOperation(int operation) {
+        long leftValue = evaluateExpression(ast.getFirstChild(operation));
+        long rightValue = evaluateExpression(ast.getChild(operation, 1));
+        byte left = kindOf(leftValue);
+        byte right = kindOf(rightValue);
+
+        if (left == PIXEL_LITERAL && right == SCALAR_LITERAL || left == SCALAR_LITERAL && right == PIXEL_LITERAL) {
+            return literal(PIXEL_LITERAL, valueOf(leftValue) * valueOf(rightValue));
+        } else if (left == PERCENTAGE_LITERAL && right == SCALAR_LITERAL) {
+            return literal(PIXEL_LITERAL, valueOf(leftValue) * valueOf(rightValue) / 100);
+        }
+        return NO_VALUE;
+    }
+
+    private ExpressionType expectedPropertyType(String propertyName) {
+        switch (propertyName) {
+            case "width":
+            case "height":
+                return ExpressionType.PIXEL;
+            case "color":
+            case "background-color":
+                return ExpressionType.COLOR;
+            default:
+                return null;
+        }
+    }
+
+    private ExpressionType determineLiteralType(byte kind) {
+        switch (kind) {
+            case PIXEL_LITERAL:
+                return ExpressionType.PIXEL;
+            case PERCENTAGE_LITERAL:
+                return ExpressionType.PERCENTAGE;
+            case COLOR_LITERAL:
+                return ExpressionType.COLOR;
+            case BOOL_LITERAL:
+                return ExpressionType.BOOL;
+            default:
+                return null;
+        }
+    }
+
+    private int copy(FlatAST.Builder builder, int node) {
+        int result = builder.add(ast.getKind(node), ast.getValue(node));
+        builder.setSourceStart(result, ast.getSourceStart(node));
+        builder.setSourceStop(result, ast.getSourceStop(node));
+        int expression = expressionOf(node);
+        long replacement = replacements[node];
+
+        for (int child = ast.getFirstChild(node); child != NO_NODE; child = ast.getNextSibling(node, child)) {
+            if (isRemoved(node, child)) {
+                continue;
+            }
+            if (child == expression && replacement != NOT_REPLACED) {
+                if (replacement != NO_VALUE) {
+                    builder.appendChild(result, builder.add(kindOf(replacement), valueOf(replacement)));
+                }
+            } else {
+                builder.appendChild(result, copy(builder, child));
+            }
+        }
+
+        SemanticError error = errors.containsKey(node) ? errors.get(node) : ast.getError(node);
+        if (error != null) {
+            builder.setError(result, error);
+        }
+        return result;
+    }
+
+    private static long literal(byte kind, int value) {
+        return ((long) kind << 32) | (value & 0xffffffffL);
+    }
+
+    private static byte kindOf(long literal) {
+        return (byte) (literal >> 32);
+    }
+
+    private static int valueOf(long literal) {
+        return (int) literal;
+    }
+}
@@ -0,0 +1,206 @@
+package nl.han.ica.icss.transforms;
+
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+
+import java.util.ArrayList;
+import java.util.Map;
+
+/*
+ * Evaluates an AST like Evaluator, but without changing it. The AST is frozen first, and
+ * only the nodes on the path to something that changes are copied: every subtree that
+ * evaluates to itself is shared between the given and the returned AST, which is frozen too.
+ * A copied node gets its own lists, so the two ASTs only share nodes, never a list.
+ *
+ * One frozen AST can be evaluated by many threads at once, each with its own
+ * PersistentEvaluator, as long as nothing writes the public fields or lists of its nodes:
+ * freezing makes the methods of a node fail, but those stay writable, so that is only a
+ * convention. Freeze a shared AST before handing it to other threads.
+ *
+ * The result is equal to what Evaluator produces, including its errors and the order in
+ * which if-clauses are evaluated.
+ *
+ * apply(AST, Map) evaluates the AST for other values of its variables, like ThemeGenerator
+ * does for themes: the bindings are declared in the top-level scope, and a top-level
+ * assignment of a bound variable gets the bound value instead of its own expression.
+ */
+public class PersistentEvaluator {
+
+    private final IHANScopeChain<String, Literal> variableValues;
+    private final ExpressionEvaluator expressionEvaluator;
+    private final NodeEvaluator nodeEvaluator = new NodeEvaluator();
+    private Map<String, Literal> bindings = Map.of();
+    private int topLevelDepth;
+
+    public PersistentEvaluator() {
+        this(new HANSymbolTable<>());
+    }
+
+    public PersistentEvaluator(IHANScopeChain<String, Literal> variableValues) {
+        this.variableValues = variableValues;
+        this.expressionEvaluator = new ExpressionEvaluator(variableValues);
+    }
+
+    public AST apply(AST ast) {
+        return apply(ast, Map.of());
+    }
+
+    public AST apply(AST ast, Map<String, Literal> bindings) {
+        ast.root.freeze();
+        this.bindings = bindings;
+        variableValues.pushScope();
+        topLevelDepth = variableValues.getDepth();
+        bindings.forEach(variableValues::declare);
+        try {
+            return new AST((Stylesheet) evaluate(ast.root).freeze());
+        } finally {
+            variableValues.popScope();
+            this.bindings = Map.of();
+        }
+    }
+
+    private ASTNode evaluate(ASTNode node) {
+        return node.accept(nodeEvaluator);
+    }
+
+    /*
+     The evaluated nodes, the same list if none of them changed.
+     */
+    private ArrayList<ASTNode> evaluateAll(ArrayList<ASTNode> nodes) {
+        ArrayList<ASTNode> result = nodes;
+        for (int i = 0; i < nodes.size(); i++) {
+            ASTNode node = nodes.get(i);
+            ASTNode evaluated = evaluate(node);
+            if (evaluated != node && result == nodes) {
+                result = new ArrayList<>(nodes.subList(0, i));
+            }
+            if (result != nodes) {
+                result.add(evaluated);
+            }
+        }
+        return result;
+    }
+
+    /*
+     Returns the evaluated node, the node itself if nothing in its subtree changed.
+     Expressions, selectors and property names never change themselves.
+     */
+    private class NodeEvaluator implements ASTVisitor<ASTNode> {
+
+        @Override
+        public ASTNode visitNode(ASTNode node) {
+            return node;
+        }
+
+        @Override
+        public ASTNode visitStylesheet(Stylesheet node) {
+            ArrayList<ASTNode> body = evaluateAll(node.body);
+            return body == node.body ? node : copyOf(node, new Stylesheet(body));
+        }
+
+        @Override
+        public ASTNode visitStylerule(Stylerule node) {
+            variableValues.pushScope();
+            ArrayList<ASTNode> body = evaluateAll(node.body);
+            variableValues.popScope();
+            if (body == node.body) {
+                return node;
+            }
+            Stylerule copy = copyOf(node, new Stylerule());
+            copy.selectors = new ArrayList<>(node.selectors);
+            copy.body = body;
+            return copy;
+        }
+
+        @Override
+        public ASTNode visitElseClause(ElseClause node) {
+            ArrayList<ASTNode> body = evaluateAll(node.body);
+            return body == node.body ? node : copyOf(node, new ElseClause(body));
+        }
+
+        @Override
+        public ASTNode visitIfClause(IfClause node) {
+            variableValues.pushScope();
+            Expression condition = node.conditionalExpression;
+            ArrayList<ASTNode> body = node.body;
+            ElseClause elseClause = node.elseClause;
+
+            Literal conditionalValue = expressionEvaluator.evaluate(condition);
+            if (conditionalValue instanceof BoolLiteral) {
+                if (((BoolLiteral) conditionalValue).value) {
+                    body = evaluateAll(body);
+                    if (!body.isEmpty()) {
+                        elseClause = null;
+                    }
+                } else if (elseClause != null) {
+                    //Only for the variables it declares, a non-empty else-clause is dropped
+                    evaluateAll(elseClause.body);
+                    if (!elseClause.body.isEmpty()) {
+                        elseClause = null;
+                    }
+                }
+                condition = conditionalValue;
+            }
+            //Like Evaluator, evaluate the children again after the clause itself
+            body = evaluateAll(body);
+            if (elseClause != null) {
+                elseClause = (ElseClause) evaluate(elseClause);
+            }
+            variableValues.popScope();
+
+            if (condition == node.conditionalExpression && body == node.body && elseClause == node.elseClause) {
+                return node;
+            }
+            return copyOf(node, new IfClause(condition, body == node.body ? new ArrayList<>(body) : body, elseClause));
+        }
+
+        @Override
+        public ASTNode visitVariableAssignment(VariableAssignment node) {
+            Literal bound = variableValues.getDepth() == topLevelDepth ? bindings.get(node.name.name) : null;
+            Literal value = bound != null ? bound : expressionEvaluator.evaluate(node.expression);
+            if (value == null) {
+                return node;
+            }
+            variableValues.declare(node.name.name, value);
+            if (value == node.expression) {
+                return node;
+            }
+            VariableAssignment copy = copyOf(node, new VariableAssignment());
+            copy.name = node.name;
+            copy.expression = value;
+            return copy;
+        }
+
+        @Override
+        public ASTNode visitDeclaration(Declaration node) {
+            Literal value = expressionEvaluator.evaluate(node.expression);
+            String error = expressionEvaluator.checkDeclaration(node.property.name, value);
+            boolean sameError = error == null || (node.hasError() && error.equals(node.getError().description));
+            if (value == node.expression && sameError) {
+                return node;
+            }
+            Declaration copy = copyOf(node, new Declaration());
+            copy.property = node.property;
+            copy.expression = value;
+            if (error != null) {
+                copy.setError(error);
+            }
+            return copy;
+        }
+    }
+
+    /*
+     Gives a copy the source range and error of the node it replaces.
+     */
+    private static <T extends ASTNode> T copyOf(ASTNode original, T copy) {
+        if (original.hasSourceRange()) {
+            copy.setSourceRange(original.getSourceStart(), original.getSourceStop());
+        }
+        if (original.hasError()) {
+            copy.setError(original.getError());
+        }
+        return copy;
+    }
+}
@@ -0,0 +1,301 @@
+package nl.han.ica.icss.workload;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Random;
+
+/**
+ * Deterministic generator of synthetic ICSS stylesheets for scaling tests and benchmarks.
+ * The same seed and settings always produce the same stylesheet.
+ *
+ * The shape is controlled by the number of stylerules (or a target size in bytes),
+ * the declarations per rule, the number of global variables, the number of operators
+ * per expression and the if/else nesting depth. With an error mode other than NONE
+ * a fraction of the rules contains a syntax or semantic error.
+ *
+ * Output is written rule by rule to an Appendable, so very large stylesheets can be
+ * streamed to a file without being held in memory.
+ */
+public class WorkloadGenerator {
+
+    public enum ErrorMode {
+        NONE,
+        SEMANTIC,
+        SYNTAX
+    }
+
+    private static final String[] TAGS = {"p", "a", "div", "span", "li", "ul", "section", "header", "footer", "nav"};
+    private static final String[] DIMENSION_PROPERTIES = {"width", "height"};
+    private static final String[] COLOR_PROPERTIES = {"color", "background-color"};
+
+    private final long seed;
+    private int rules = 100;
+    private long targetSize = -1;
+    private int declarationsPerRule = 3;
+    private int variables = 8;
+    private int expressionDepth = 1;
+    private int nestingDepth = 0;
+    private ErrorMode errorMode = ErrorMode.NONE;
+    private double errorRate = 0.1;
+
+    public WorkloadGenerator(long seed) {
+        this.seed = seed;
+    }
+
+    public WorkloadGenerator setRules(int rules) {
+        this.rules = rules;
+        this.targetSize = -1;
+        return this;
+    }
+
+    /*
+     Keep generating rules until at least this many characters have been written.
+     Overrides the number of rules.
+     */
+    public WorkloadGenerator setTargetSize(long targetSize) {
+        this.targetSize = targetSize;
+        return this;
+    }
+
+    public WorkloadGenerator setDeclarationsPerRule(int declarationsPerRule) {
+        this.declarationsPerRule = declarationsPerRule;
+        return this;
+    }
+
+    public WorkloadGenerator setVariables(int variables) {
+        this.variables = variables;
+        return this;
+    }
+
+    /*
+     Number of operators in every width and height value after its first operand. Each one
+     is either + and another pixel operand, or about one in four times * and a scalar from 2
+     to 5. No - is generated, the evaluators give a subtraction no value.
+     */
+    public WorkloadGenerator setExpressionDepth(int expressionDepth) {
+        this.expressionDepth = expressionDepth;
+        return this;
+    }
+
+    public WorkloadGenerator setNestingDepth(int nestingDepth) {
+        this.nestingDepth = nestingDepth;
+        return this;
+    }
+
+    public WorkloadGenerator setErrorMode(ErrorMode errorMode) {
+        this.errorMode = errorMode;
+        return this;
+    }
+
+    public WorkloadGenerator setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    public String generate() {
+        StringBuilder builder = new StringBuilder();
+        try {
+            generate(builder);
+        } catch (IOException e) {
+            //A StringBuilder does not throw
+            throw new IllegalStateException(e);
+        }
+        return builder.toString();
+    }
+
+    public void generate(Appendable out) throws IOException {
+        Random random = new Random(seed);
+        //Variables are split over the three kinds; if-clauses need at least one boolean
+        int pixelVariables = (variables + 2) / 3;
+        int colorVariables = (variables + 1) / 3;
+        int boolVariables = variables / 3;
+        if (nestingDepth > 0 && boolVariables == 0) {
+            boolVariables = 1;
+        }
+        Variables declared = new Variables(pixelVariables, colorVariables, boolVariables);
+
+        StringBuilder chunk = new StringBuilder();
+        declared.appendAssignments(chunk, random);
+        out.append(chunk);
+        long written = chunk.length();
+
+        for (int rule = 0; targetSize >= 0 ? written < targetSize : rule < rules; rule++) {
+            chunk.setLength(0);
+            boolean faulty = errorMode != ErrorMode.NONE && random.nextDouble() < errorRate;
+            appendStylerule(chunk, rule, declared, faulty, random);
+            out.append(chunk);
+            written += chunk.length();
+        }
+    }
+
+    private void appendStylerule(StringBuilder out, int rule, Variables declared, boolean faulty, Random random) {
+        appendSelector(out, rule, random);
+        out.append(" {\n");
+
+        //The faulty declaration goes at a random position in the rule body or one of its if-clauses
+        int faultyLevel = faulty ? random.nextInt(nestingDepth + 1) : -1;
+        appendBody(out, 0, declared, faultyLevel, random);
+        out.append("}\n");
+    }
+
+    private void appendBody(StringBuilder out, int level, Variables declared, int faultyLevel, Random random) {
+        String indent = "  ".repeat(level + 1);
+        for (int i = 0; i < declarationsPerRule; i++) {
+            appendDeclaration(out, indent, declared, random);
+        }
+        if (level == faultyLevel) {
+            appendError(out, indent, random);
+        }
+        if (level < nestingDepth) {
+            out.append(indent).append("if[").append(declared.bool(random)).append("] {\n");
+            appendBody(out, level + 1, declared, faultyLevel, random);
+            out.append(indent).append('}');
+            if (random.nextBoolean()) {
+                out.append(" else {\n");
+                for (int i = 0; i < declarationsPerRule; i++) {
+                    appendDeclaration(out, indent + "  ", declared, random);
+                }
+                out.append(indent).append('}');
+            }
+            out.append('\n');
+        }
+    }
+
+    private void appendSelector(StringBuilder out, int rule, Random random) {
+        switch (random.nextInt(3)) {
+            case 0:
+                out.append(TAGS[random.nextInt(TAGS.length)]);
+                break;
+            case 1:
+                out.append("#id-").append(rule);
+                break;
+            default:
+                out.append(".rule-").append(rule);
+        }
+    }
+
+    private void appendDeclaration(StringBuilder out, String indent, Variables declared, Random random) {
+        out.append(indent);
+        if (random.nextBoolean()) {
+            out.append(DIMENSION_PROPERTIES[random.nextInt(DIMENSION_PROPERTIES.length)]).append(": ");
+            appendPixelOperand(out, declared, random);
+            for (int i = 0; i < expressionDepth; i++) {
+                if (random.nextInt(4) == 0) {
+                    out.append(" * ").append(2 + random.nextInt(4));
+                } else {
+                    out.append(" + ");
+                    appendPixelOperand(out, declared, random);
+                }
+            }
+        } else {
+            out.append(COLOR_PROPERTIES[random.nextInt(COLOR_PROPERTIES.length)]).append(": ");
+            if (declared.colors > 0 && random.nextBoolean()) {
+                out.append(declared.color(random));
+            } else {
+                appendColor(out, random);
+            }
+        }
+        out.append(";\n");
+    }
+
+    private void appendPixelOperand(StringBuilder out, Variables declared, Random random) {
+        if (declared.pixels > 0 && random.nextBoolean()) {
+            out.append(declared.pixel(random));
+        } else {
+            out.append(random.nextInt(1000)).append("px");
+        }
+    }
+
+    private void appendError(StringBuilder out, String indent, Random random) {
+        if (errorMode == ErrorMode.SYNTAX) {
+            //Missing value, missing semicolon or an unknown property
+            switch (random.nextInt(3)) {
+                case 0:
+                    out.append(indent).append("width: ;\n");
+                    break;
+                case 1:
+                    out.append(indent).append("width: 10px\n");
+                    break;
+                default:
+                    out.append(indent).append("margin: 10px;\n");
+            }
+        } else {
+            //Wrong type for the property or an undeclared variable
+            if (random.nextBoolean()) {
+                out.append(indent).append("width: #ff0000;\n");
+            } else {
+                out.append(indent).append("color: Undeclared;\n");
+            }
+        }
+    }
+
+    private static void appendColor(StringBuilder out, Random random) {
+        String hex = Integer.toHexString(random.nextInt(0x1000000));
+        out.append('#');
+        for (int i = hex.length(); i < 6; i++) {
+            out.append('0');
+        }
+        out.append(hex);
+    }
+
+    private static class Variables {
+        final int pixels;
+        final int colors;
+        final int bools;
+
+        Variables(int pixels, int colors, int bools) {
+            this.pixels = pixels;
+            this.colors = colors;
+            this.bools = bools;
+        }
+
+        void appendAssignments(StringBuilder out, Random random) {
+            for (int i = 0; i < pixels; i++) {
+                out.append("Width").append(i).append(" := ").append(random.nextInt(1000)).append("px;\n");
+            }
+            for (int i = 0; i < colors; i++) {
+                out.append("Color").append(i).append(" := ");
+                appendColor(out, random);
+                out.append(";\n");
+            }
+            for (int i = 0; i < bools; i++) {
+                out.append("Flag").append(i).append(" := ").append(random.nextBoolean() ? "TRUE" : "FALSE").append(";\n");
+            }
+            out.append('\n');
+        }
+
+        String pixel(Random random) {
+            return "Width" + random.nextInt(pixels);
+        }
+
+        String color(Random random) {
+            return "Color" + random.nextInt(colors);
+        }
+
+        String bool(Random random) {
+            return "Flag" + random.nextInt(bools);
+        }
+    }
+
+    /*
+     Writes a generated stylesheet to a file.
+     Usage: WorkloadGenerator output-file size-in-bytes [seed] [nesting-depth]
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("Usage: WorkloadGenerator output-file size-in-bytes [seed] [nesting-depth]");
+            System.exit(2);
+        }
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 1;
+        WorkloadGenerator generator = new WorkloadGenerator(seed).setTargetSize(Long.parseLong(args[1]));
+        if (args.length > 3) {
+            generator.setNestingDepth(Integer.parseInt(args[3]));
+        }
+        try (Writer writer = Files.newBufferedWriter(Paths.get(args[0]), StandardCharsets.UTF_8)) {
+            generator.generate(writer);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package nl.han.ica.datastructures;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.datastructures.deque.HANArrayDeque;
+import nl.han.ica.datastructures.linkedList.HANArrayList;
+
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+
+class HANArrayStructuresTest {
+
+	@Test
+	void testArrayListKeepsOrderWhileGrowing() {
+		HANArrayList<Integer> list = new HANArrayList<>(2);
+		for (int i = 0; i < 100; i++) {
+			list.addLast(i);
+		}
+		list.addFirst(-1);
+		list.insert(50, 1000);
+		list.delete(0);
+
+		assertEquals(101, list.getSize());
+		assertEquals(0, list.getFirst());
+		assertEquals(1000, list.get(49));
+		assertEquals(99, list.get(100));
+	}
+
+	@Test
+	void testDequeWrapsAroundAsStackAndQueue() {
+		HANArrayDeque<Integer> deque = new HANArrayDeque<>();
+		for (int i = 0; i < 40; i++) {
+			deque.enqueue(i);
+			deque.push(-i);
+		}
+		assertEquals(80, deque.getSize());
+		assertEquals(-39, deque.pop());
+		assertEquals(-38, deque.peek());
+
+		for (int i = 38; i >= 0; i--) {
+			assertEquals(-i, deque.pop());
+		}
+		for (int i = 0; i < 40; i++) {
+			assertEquals(i, deque.dequeue());
+		}
+		assertTrue(deque.isEmpty());
+		assertThrows(IllegalStateException.class, deque::pop);
+	}
+
+	@Test
+	void testIteratorsFailFast() {
+		HANArrayDeque<Integer> deque = new HANArrayDeque<>();
+		deque.enqueue(1);
+		deque.enqueue(2);
+		Iterator<Integer> dequeIterator = deque.iterator();
+		dequeIterator.next();
+		deque.push(0);
+		assertThrows(ConcurrentModificationException.class, dequeIterator::next);
+
+		HANArrayList<Integer> list = new HANArrayList<>();
+		list.addLast(1);
+		Iterator<Integer> listIterator = list.iterator();
+		list.addLast(2);
+		assertThrows(ConcurrentModificationException.class, listIterator::next);
+	}
+}
@@ -0,0 +1,112 @@
+package nl.han.ica.icss;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.parser.Fixtures;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+class PipelineTest {
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	void testTwoStageParsingMatchesLL() throws IOException {
+		Pipeline twoStage = new Pipeline();
+		Pipeline llOnly = new Pipeline();
+		llOnly.setTwoStageParsing(false);
+
+		twoStage.parseString(readTestFile("level3.icss"));
+		llOnly.parseString(readTestFile("level3.icss"));
+
+		assertTrue(twoStage.isParsed());
+		assertEquals(Fixtures.uncheckedLevel3(), twoStage.getAST());
+		assertEquals(llOnly.getAST(), twoStage.getAST());
+		assertEquals(0, twoStage.getLLFallbackCount());
+	}
+
+	@Test
+	void testTwoStageParsingFallsBackOnSyntaxError() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p { width: #ff; }");
+
+		assertFalse(pipeline.isParsed());
+		assertEquals(1, pipeline.getLLFallbackCount());
+		assertFalse(pipeline.getErrors().isEmpty());
+		assertTrue(pipeline.getErrors().get(0).startsWith("Syntax error"));
+	}
+
+	@Test
+	void testTransformReportsEvaluatorErrors() {
+		for (int mode = 0; mode < 3; mode++) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setFlatASTMode(mode == 1);
+			pipeline.setImmutableAST(mode == 2);
+			//Without check() the evaluator is the first to see the wrong type
+			pipeline.parseString("p {\n\twidth: #ff0000;\n}\na { height: 50%; }");
+			pipeline.transform();
+
+			assertFalse(pipeline.isTransformed());
+			assertEquals(1, pipeline.getErrors().size(), pipeline.getErrors()::toString);
+			assertEquals("ERROR at 2:2: Type mismatch for property 'width': expected PIXEL but got COLOR",
+					pipeline.getErrors().get(0));
+		}
+	}
+
+	@Test
+	void testDirectASTConstruction() throws IOException {
+		AST[] expected = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+				Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+		Pipeline pipeline = new Pipeline();
+		pipeline.setDirectASTConstruction(true);
+
+		for (int level = 0; level < expected.length; level++) {
+			pipeline.parseString(readTestFile("level" + level + ".icss"));
+			assertTrue(pipeline.isParsed());
+			assertEquals(expected[level], pipeline.getAST());
+		}
+	}
+
+	@Test
+	void testDirectASTConstructionKeepsOperatorPrecedence() {
+		String input = "A := 1px + 2 * 3px - 4px * 5 * 6;\np { width: A - 2px + 3px; height: 2 * A; }";
+		Pipeline direct = new Pipeline();
+		direct.setDirectASTConstruction(true);
+		Pipeline fromParseTree = new Pipeline();
+
+		direct.parseString(input);
+		fromParseTree.parseString(input);
+
+		assertTrue(direct.isParsed());
+		assertEquals(fromParseTree.getAST().toString(), direct.getAST().toString());
+	}
+
+	@Test
+	void testDirectASTConstructionReportsSyntaxErrors() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setDirectASTConstruction(true);
+		pipeline.parseString("p { width: #ff; }");
+
+		assertFalse(pipeline.isParsed());
+		assertEquals(1, pipeline.getLLFallbackCount());
+		assertTrue(pipeline.getErrors().get(0).startsWith("Syntax error"));
+	}
+
+	@Test
+	void testShadowedVariableIsRestoredAfterItsScope() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("W := 10px;\np { W := 20px; width: W; }\na { width: W; }");
+		assertTrue(pipeline.check());
+		pipeline.transform();
+
+		assertEquals("p {\n  width: 20px;\n}\n\na {\n  width: 10px;\n}\n\n", pipeline.generate());
+	}
+}
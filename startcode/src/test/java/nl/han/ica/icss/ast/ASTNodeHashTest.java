@@ -0,0 +1,126 @@
+package nl.han.ica.icss.ast;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.parser.Fixtures;
+
+import java.util.HashSet;
+import java.util.Set;
+
+class ASTNodeHashTest {
+
+	private static AST parse(String input) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		return pipeline.getAST();
+	}
+
+	private static Stylerule firstRule(AST ast) {
+		for (ASTNode node : ast.root.body) {
+			if (node instanceof Stylerule) {
+				return (Stylerule) node;
+			}
+		}
+		throw new AssertionError("No stylerule");
+	}
+
+	@Test
+	void testEqualTreesHaveEqualHashes() {
+		AST first = Fixtures.uncheckedLevel3();
+		AST second = Fixtures.uncheckedLevel3();
+
+		assertEquals(first, second);
+		assertEquals(first.root.hashCode(), second.root.hashCode());
+		assertEquals(first.root.hashCode(), first.root.hashCode());
+		assertEquals(first, second);
+	}
+
+	@Test
+	void testValuesAndClassesAreCompared() {
+		assertNotEquals(new PropertyName("width"), new PropertyName("height"));
+		assertNotEquals(new PixelLiteral(10), new ScalarLiteral(10));
+
+		Operation add = (Operation) new AddOperation().addChild(new ScalarLiteral(1)).addChild(new ScalarLiteral(2));
+		Operation multiply = (Operation) new MultiplyOperation().addChild(new ScalarLiteral(1)).addChild(new ScalarLiteral(2));
+		assertNotEquals(add, multiply);
+	}
+
+	@Test
+	void testAddChildChangesHashOfAncestors() {
+		AST ast = Fixtures.uncheckedLevel0();
+		AST unchanged = Fixtures.uncheckedLevel0();
+		int hash = ast.root.hashCode();
+		unchanged.root.hashCode();
+
+		Declaration declaration = new Declaration("height");
+		declaration.addChild(new PixelLiteral(10));
+		firstRule(ast).addChild(declaration);
+
+		assertNotEquals(hash, ast.root.hashCode());
+		assertNotEquals(unchanged, ast);
+	}
+
+	@Test
+	void testFieldWritesAreSeenAfterHashing() {
+		AST ast = parse("p { width: 10px; }");
+		AST other = parse("p { width: 20px; }");
+		Set<AST> asts = new HashSet<>();
+		asts.add(other);
+		ast.root.hashCode();
+		other.root.hashCode();
+
+		Declaration declaration = (Declaration) firstRule(ast).body.get(0);
+		declaration.expression = new PixelLiteral(20);
+
+		assertEquals(other.root.toString(), ast.root.toString());
+		assertEquals(other, ast);
+		assertEquals(other.root.hashCode(), ast.root.hashCode());
+		assertTrue(asts.contains(ast));
+	}
+
+	@Test
+	void testChangingOneASTKeepsHashesOfOthers() {
+		AST first = Fixtures.uncheckedLevel1();
+		AST second = Fixtures.uncheckedLevel1();
+		AST frozen = Fixtures.uncheckedLevel1();
+		frozen.root.freeze();
+		int hash = second.root.hashCode();
+		first.root.hashCode();
+
+		Declaration declaration = (Declaration) firstRule(first).body.get(0);
+		declaration.expression = new PixelLiteral(12345);
+
+		assertNotEquals(hash, first.root.hashCode());
+		assertEquals(hash, second.root.hashCode());
+		assertEquals(hash, frozen.root.hashCode());
+		assertEquals(second, frozen);
+		assertNotEquals(first, second);
+	}
+
+	@Test
+	void testFrozenNodesWithDifferentHashesAreUnequal() {
+		AST first = parse("p { width: 10px; }");
+		AST second = parse("p { width: 20px; }");
+		first.root.freeze();
+		second.root.freeze();
+
+		assertNotEquals(first.root.hashCode(), second.root.hashCode());
+		assertNotEquals(first, second);
+		assertEquals(parse("p { width: 10px; }").root, first.root);
+	}
+
+	@Test
+	void testSubtreesCanBeDeduplicated() {
+		Set<ASTNode> rules = new HashSet<>();
+		rules.addAll(Fixtures.uncheckedLevel1().root.body);
+		rules.addAll(Fixtures.uncheckedLevel1().root.body);
+
+		assertEquals(Fixtures.uncheckedLevel1().root.body.size(), rules.size());
+	}
+}
@@ -0,0 +1,34 @@
+package nl.han.ica.icss.ast;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.parser.Fixtures;
+
+import java.util.ArrayList;
+import java.util.List;
+
+class ASTTraversalTest {
+
+	@Test
+	void testBreadthFirstVisitsNodesInLevelOrder() {
+		AST ast = Fixtures.uncheckedLevel0();
+		List<String> labels = new ArrayList<>();
+		List<Integer> levels = new ArrayList<>();
+
+		ASTTraversal.breadthFirst(ast.root, (node, level) -> {
+			labels.add(node.getNodeLabel());
+			levels.add(level);
+		});
+
+		assertEquals("Stylesheet", labels.get(0));
+		assertEquals(List.of("Stylerule", "Stylerule", "Stylerule", "Stylerule"), labels.subList(1, 5));
+		assertEquals("TagSelector p", labels.get(5));
+		assertEquals(List.of("Property: (background-color)", "Color literal (#ffffff)", "Property: (width)", "Pixel literal (500)"),
+				labels.subList(labels.size() - 10, labels.size() - 6));
+		for (int i = 1; i < levels.size(); i++) {
+			assertTrue(levels.get(i - 1) <= levels.get(i));
+		}
+		assertEquals(3, (int) levels.get(levels.size() - 1));
+	}
+}
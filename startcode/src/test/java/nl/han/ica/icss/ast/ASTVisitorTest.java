@@ -0,0 +1,69 @@
+package nl.han.ica.icss.ast;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.ast.literals.ScalarLiteral;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.selectors.TagSelector;
+import nl.han.ica.icss.parser.Fixtures;
+
+class ASTVisitorTest {
+
+	private static class KindVisitor implements ASTVisitor<String> {
+		@Override
+		public String visitNode(ASTNode node) {
+			return "node";
+		}
+		@Override
+		public String visitLiteral(Literal node) {
+			return "literal";
+		}
+		@Override
+		public String visitOperation(Operation node) {
+			return "operation";
+		}
+		@Override
+		public String visitPixelLiteral(PixelLiteral node) {
+			return "pixel";
+		}
+	}
+
+	@Test
+	void testAcceptCallsMethodOfNodeClass() {
+		KindVisitor visitor = new KindVisitor();
+
+		assertEquals("pixel", new PixelLiteral(10).accept(visitor));
+		assertEquals("node", new Stylesheet().accept(visitor));
+	}
+
+	@Test
+	void testUnimplementedMethodsFallThroughToSuperclass() {
+		KindVisitor visitor = new KindVisitor();
+
+		assertEquals("literal", new ScalarLiteral(2).accept(visitor));
+		assertEquals("operation", new AddOperation().accept(visitor));
+		assertEquals("node", new TagSelector("p").accept(visitor));
+	}
+
+	@Test
+	void testEveryNodeOfFixtureIsDispatched() {
+		AST ast = Fixtures.uncheckedLevel3();
+		int[] count = new int[2];
+
+		ASTTraversal.breadthFirst(ast.root, (node, level) -> {
+			count[0]++;
+			node.accept(new ASTVisitor<Void>() {
+				@Override
+				public Void visitNode(ASTNode visited) {
+					assertSame(node, visited);
+					count[1]++;
+					return null;
+				}
+			});
+		});
+
+		assertEquals(count[0], count[1]);
+	}
+}
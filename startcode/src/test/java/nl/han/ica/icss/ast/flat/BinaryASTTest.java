@@ -0,0 +1,138 @@
+package nl.han.ica.icss.ast.flat;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+class BinaryASTTest {
+
+	@TempDir
+	Path directory;
+
+	private static final AST[] FIXTURES = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+			Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+
+	private static byte[] write(FlatAST ast, int flags) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		BinaryAST.write(ast, flags, out);
+		return out.toByteArray();
+	}
+
+	@Test
+	void testRoundTripsFixtures() throws IOException {
+		for (AST fixture : FIXTURES) {
+			BinaryAST binary = BinaryAST.read(ByteBuffer.wrap(write(FlatASTAdapter.fromAST(fixture), 0)));
+
+			assertEquals(fixture, FlatASTAdapter.toAST(binary.getAST()));
+			assertFalse(binary.isChecked());
+			assertFalse(binary.isTransformed());
+		}
+	}
+
+	@Test
+	void testLoadContinuesAfterCheck() throws IOException {
+		String input = new WorkloadGenerator(7)
+				.setRules(100)
+				.setVariables(10)
+				.setNestingDepth(2)
+				.setErrorMode(WorkloadGenerator.ErrorMode.SEMANTIC)
+				.setErrorRate(0.2)
+				.generate();
+		Pipeline original = new Pipeline();
+		original.parseString(input);
+		original.check();
+		original.saveAST(directory.resolve("checked.icssb"));
+
+		Pipeline loaded = new Pipeline();
+		loaded.loadAST(directory.resolve("checked.icssb"));
+
+		assertFalse(original.getErrors().isEmpty());
+		assertEquals(original.getErrors(), loaded.getErrors());
+		assertEquals(original.getAST(), loaded.getAST());
+		assertEquals(original.getAST().getErrors().toString(), loaded.getAST().getErrors().toString());
+		assertTrue(loaded.isParsed());
+		assertEquals(original.isChecked(), loaded.isChecked());
+	}
+
+	@Test
+	void testLoadContinuesAfterTransform() throws IOException {
+		for (boolean flat : new boolean[]{false, true}) {
+			String input = new WorkloadGenerator(3).setRules(100).setVariables(10).setNestingDepth(3).generate();
+			Pipeline original = new Pipeline();
+			original.setFlatASTMode(flat);
+			original.parseString(input);
+			assertTrue(original.check(), () -> String.join("\n", original.getErrors()));
+			original.transform();
+			original.saveAST(directory.resolve("transformed.icssb"));
+
+			Pipeline loaded = new Pipeline();
+			loaded.loadAST(directory.resolve("transformed.icssb"));
+
+			assertTrue(loaded.isChecked());
+			assertTrue(loaded.isTransformed());
+			assertEquals(original.generate(), loaded.generate());
+		}
+	}
+
+	@Test
+	void testCheckAfterLoadReportsLines() throws IOException {
+		String input = "Width := 10px;\np {\n\tcolor: Width;\n\theight: Height;\n}\n";
+		Pipeline original = new Pipeline();
+		original.parseString(input);
+		original.saveAST(directory.resolve("parsed.icssb"));
+		original.check();
+
+		Pipeline loaded = new Pipeline();
+		loaded.loadAST(directory.resolve("parsed.icssb"));
+
+		assertFalse(loaded.check());
+		assertEquals(original.getErrors(), loaded.getErrors());
+		assertTrue(loaded.getErrors().contains("ERROR at 3:2: Expected COLOR, but got PIXEL"), loaded.getErrors()::toString);
+		assertTrue(loaded.getErrors().contains("ERROR at 4:10: Variable 'Height' is being used outside of its scope."),
+				loaded.getErrors()::toString);
+	}
+
+	@Test
+	void testKeepsSourceRanges() throws IOException {
+		String input = new WorkloadGenerator(5).setRules(50).setVariables(6).setNestingDepth(2).generate();
+		Pipeline original = new Pipeline();
+		original.parseString(input);
+		original.saveAST(directory.resolve("parsed.icssb"));
+
+		Pipeline loaded = new Pipeline();
+		loaded.loadAST(directory.resolve("parsed.icssb"));
+
+		assertEquals(FlatASTTest.sourceRanges(original.getAST()), FlatASTTest.sourceRanges(loaded.getAST()));
+	}
+
+	@Test
+	void testRejectsOtherData() throws IOException {
+		byte[] valid = write(FlatASTAdapter.fromAST(Fixtures.uncheckedLevel3()), 0);
+
+		byte[] otherMagic = valid.clone();
+		otherMagic[0] = 'X';
+		byte[] otherVersion = valid.clone();
+		otherVersion[4] = (byte) (BinaryAST.VERSION + 1);
+		byte[] truncated = Arrays.copyOf(valid, valid.length / 2);
+
+		assertThrows(IOException.class, () -> BinaryAST.read(ByteBuffer.wrap(otherMagic)));
+		assertThrows(IOException.class, () -> BinaryAST.read(ByteBuffer.wrap(otherVersion)));
+		assertThrows(IOException.class, () -> BinaryAST.read(ByteBuffer.wrap(truncated)));
+	}
+
+	@Test
+	void testSaveWithoutASTFails() {
+		assertThrows(IllegalStateException.class, () -> new Pipeline().saveAST(directory.resolve("none.icssb")));
+	}
+}
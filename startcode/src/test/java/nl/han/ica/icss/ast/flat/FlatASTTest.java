@@ -0,0 +1,218 @@
+package nl.han.ica.icss.ast.flat;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.literals.ColorLiteral;
+import nl.han.ica.icss.parser.Fixtures;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class FlatASTTest {
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static final AST[] FIXTURES = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+			Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+
+	@Test
+	void testAdapterRoundTripsFixtures() {
+		for (AST fixture : FIXTURES) {
+			AST roundTripped = FlatASTAdapter.toAST(FlatASTAdapter.fromAST(fixture));
+			assertEquals(fixture, roundTripped);
+			assertEquals(fixture.toString(), roundTripped.toString());
+		}
+	}
+
+	//The source range of every node in preorder
+	static List<String> sourceRanges(AST ast) {
+		List<String> ranges = new ArrayList<>();
+		addSourceRanges(ast.root, ranges);
+		return ranges;
+	}
+
+	private static void addSourceRanges(ASTNode node, List<String> ranges) {
+		ranges.add(node.getNodeLabel() + " " + node.getSourceStart() + ".." + node.getSourceStop());
+		for (int i = 0; i < node.getChildCount(); i++) {
+			addSourceRanges(node.getChild(i), ranges);
+		}
+	}
+
+	@Test
+	void testKeepsSourceRanges() {
+		String input = new WorkloadGenerator(11).setRules(50).setVariables(6).setNestingDepth(2).generate();
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		Pipeline flatPipeline = new Pipeline();
+		flatPipeline.setFlatASTMode(true);
+		flatPipeline.parseString(input);
+
+		List<String> ranges = sourceRanges(pipeline.getAST());
+		assertEquals(ranges, sourceRanges(FlatASTAdapter.toAST(flatPipeline.getFlatAST())));
+		assertEquals(ranges, sourceRanges(FlatASTAdapter.toAST(FlatASTAdapter.fromAST(pipeline.getAST()))));
+		assertTrue(ranges.stream().noneMatch(range -> range.endsWith("-1")), ranges::toString);
+	}
+
+	//Subtree sizes and source lengths that do not fit in a char
+	@Test
+	void testKeepsLongSubtreesAndRanges() throws IOException {
+		FlatAST.Builder builder = new FlatAST.Builder();
+		int stylesheet = builder.add(FlatAST.STYLESHEET);
+		int rule = builder.add(FlatAST.STYLERULE);
+		builder.appendChild(stylesheet, rule);
+		builder.setSourceStart(rule, 3);
+		builder.setSourceStop(rule, 1_000_000);
+		builder.appendChild(rule, builder.add(FlatAST.TAG_SELECTOR, "p"));
+		for (int i = 0; i < 25_000; i++) {
+			int declaration = builder.add(FlatAST.DECLARATION);
+			builder.appendChild(declaration, builder.add(FlatAST.PROPERTY_NAME, "width"));
+			builder.appendChild(declaration, builder.add(FlatAST.PIXEL_LITERAL, i));
+			builder.appendChild(rule, declaration);
+		}
+		int last = builder.add(FlatAST.STYLERULE);
+		builder.appendChild(stylesheet, last);
+		//An empty range and a stop without a start
+		builder.setSourceStart(last, 20);
+		builder.setSourceStop(last, 19);
+		int selector = builder.add(FlatAST.CLASS_SELECTOR, ".a");
+		builder.setSourceStop(selector, 7);
+		builder.appendChild(last, selector);
+
+		FlatAST flat = builder.build(stylesheet);
+		ByteArrayOutputStream binary = new ByteArrayOutputStream();
+		BinaryAST.write(flat, 0, binary);
+		for (FlatAST ast : new FlatAST[]{flat, BinaryAST.read(ByteBuffer.wrap(binary.toByteArray())).getAST()}) {
+			assertEquals(75_005, ast.size());
+			assertEquals(75_003, ast.getEnd(1));
+			assertEquals(75_003, ast.getNextSibling(0, 1));
+			assertEquals(1_000_000, ast.getSourceStop(1));
+			assertEquals(20, ast.getSourceStart(75_003));
+			assertEquals(19, ast.getSourceStop(75_003));
+			assertEquals(-1, ast.getSourceStart(75_004));
+			assertEquals(7, ast.getSourceStop(75_004));
+			assertEquals(-1, ast.getSourceStop(2));
+			assertEquals(24_999, ast.getValue(ast.getChild(ast.getChild(1, 25_000), 1)));
+		}
+	}
+
+	@Test
+	void testAdapterKeepsErrors() {
+		AST ast = Fixtures.uncheckedLevel0();
+		ast.root.getChild(1).setError("Something is wrong");
+
+		AST roundTripped = FlatASTAdapter.toAST(FlatASTAdapter.fromAST(ast));
+
+		assertEquals(1, roundTripped.getErrors().size());
+		assertEquals("Something is wrong", roundTripped.root.getChild(1).getError().description);
+	}
+
+	@Test
+	void testAdapterKeepsColorsThatAreNotRGBValues() {
+		AST ast = Fixtures.uncheckedLevel0();
+		Declaration declaration = (Declaration) ((Stylerule) ast.root.getChild(0)).body.get(0);
+		declaration.expression = new ColorLiteral("#FFF");
+
+		FlatAST flat = FlatASTAdapter.fromAST(ast);
+
+		assertEquals(ast, FlatASTAdapter.toAST(flat));
+	}
+
+	@Test
+	void testParentsAndChildrenMatch() {
+		FlatAST flat = FlatASTAdapter.fromAST(Fixtures.uncheckedLevel3());
+
+		assertEquals(FlatAST.NO_NODE, flat.getParent(flat.getRoot()));
+		for (int node = 0; node < flat.size(); node++) {
+			for (int child = flat.getFirstChild(node); child != FlatAST.NO_NODE; child = flat.getNextSibling(node, child)) {
+				assertEquals(node, flat.getParent(child));
+			}
+		}
+	}
+
+	@Test
+	void testParsesToFixtures() throws IOException {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setFlatASTMode(true);
+
+		for (int level = 0; level < FIXTURES.length; level++) {
+			pipeline.parseString(readTestFile("level" + level + ".icss"));
+			assertTrue(pipeline.isParsed());
+			assertEquals(FIXTURES[level], pipeline.getAST());
+		}
+	}
+
+	@Test
+	void testReportsSyntaxErrors() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setFlatASTMode(true);
+		pipeline.parseString("p { width: #ff; }");
+
+		assertFalse(pipeline.isParsed());
+		assertTrue(pipeline.getErrors().get(0).startsWith("Syntax error"));
+		assertEquals(new AST(), pipeline.getAST());
+	}
+
+	@Test
+	void testCompilesFixturesLikeObjectAST() throws IOException {
+		for (int level = 0; level < FIXTURES.length; level++) {
+			assertCompilesLikeObjectAST(readTestFile("level" + level + ".icss"));
+		}
+	}
+
+	@Test
+	void testCompilesGeneratedStylesheetsLikeObjectAST() {
+		for (int nesting = 0; nesting <= 3; nesting++) {
+			assertCompilesLikeObjectAST(new WorkloadGenerator(nesting)
+					.setRules(200)
+					.setVariables(nesting * 5)
+					.setExpressionDepth(3)
+					.setNestingDepth(nesting)
+					.generate());
+			assertCompilesLikeObjectAST(new WorkloadGenerator(nesting)
+					.setRules(200)
+					.setVariables(10)
+					.setNestingDepth(nesting)
+					.setErrorMode(WorkloadGenerator.ErrorMode.SEMANTIC)
+					.setErrorRate(0.2)
+					.generate());
+		}
+	}
+
+	private void assertCompilesLikeObjectAST(String input) {
+		Pipeline objects = new Pipeline();
+		Pipeline flat = new Pipeline();
+		flat.setFlatASTMode(true);
+
+		objects.parseString(input);
+		flat.parseString(input);
+		assertEquals(objects.getAST(), flat.getAST());
+
+		assertEquals(objects.check(), flat.check());
+		assertEquals(objects.getErrors(), flat.getErrors());
+		assertEquals(objects.getAST().getErrors().toString(), flat.getAST().getErrors().toString());
+
+		objects.transform();
+		flat.transform();
+		assertEquals(objects.getAST(), flat.getAST());
+		assertEquals(objects.getAST().toString(), flat.getAST().toString());
+		assertEquals(objects.getAST().getErrors().toString(), flat.getAST().getErrors().toString());
+
+		assertEquals(objects.generate(), flat.generate());
+	}
+}
@@ -0,0 +1,58 @@
+package nl.han.ica.icss.checker;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+
+class CheckerTest {
+
+	Pipeline checkString(String input) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		assertTrue(pipeline.isParsed(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.check();
+		return pipeline;
+	}
+
+	@Test
+	void testVariablesResolveThroughNestedScopes() {
+		Pipeline pipeline = checkString("W := 10px; Flag := TRUE;\n"
+				+ "p { C := #ff0000; if[Flag] { if[Flag] { width: W; color: C; } } }");
+		assertTrue(pipeline.isChecked(), () -> String.join("\n", pipeline.getErrors()));
+	}
+
+	@Test
+	void testVariableIsNotVisibleOutsideItsScope() {
+		Pipeline pipeline = checkString("p { W := 10px; }\na { width: W; }");
+		assertFalse(pipeline.isChecked());
+		assertTrue(pipeline.getErrors().contains("ERROR at 2:12: Variable 'W' is being used outside of its scope."));
+	}
+
+	@Test
+	void testRedeclarationWithDifferentTypeIsAnError() {
+		Pipeline pipeline = checkString("W := 10px;\np { W := #ffffff; }");
+		assertFalse(pipeline.isChecked());
+		assertTrue(pipeline.getErrors().contains("ERROR at 2:5: Variable is already defined with a different type."));
+	}
+
+	//The checker accepts exactly the products the evaluators give a value
+	@Test
+	void testMultiplicationsAreTypedLikeTheEvaluator() {
+		for (boolean flat : new boolean[]{false, true}) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setFlatASTMode(flat);
+			pipeline.parseString("W := 10px;\np { width: W * 2 + 3 * 4px; height: 50% * 2; }");
+			assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+			pipeline.transform();
+			assertEquals("p {\n  width: 32px;\n  height: 1px;\n}\n\n", pipeline.generate());
+
+			for (String value : new String[]{"2 * 50%", "2 * 3", "2px * 3px", "#ffffff * 2"}) {
+				Pipeline rejected = new Pipeline();
+				rejected.setFlatASTMode(flat);
+				rejected.parseString("p { height: " + value + "; }");
+				assertFalse(rejected.check(), value);
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package nl.han.ica.icss.checker;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+
+class SourcePositionTest {
+
+	private static final String INPUT = "p {\n  width: 10px;\n}\na { color: X; }";
+
+	@Test
+	void testLineIndex() {
+		LineIndex lines = new LineIndex("ab\ncd\n\ne");
+
+		assertEquals(4, lines.getLineCount());
+		assertEquals(1, lines.getLine(0));
+		assertEquals(2, lines.getColumn(1));
+		assertEquals(1, lines.getLine(2));
+		assertEquals(2, lines.getLine(3));
+		assertEquals(1, lines.getColumn(3));
+		assertEquals(3, lines.getLine(6));
+		assertEquals(4, lines.getLine(7));
+	}
+
+	@Test
+	void testLineIndexCountsCodePoints() {
+		LineIndex lines = new LineIndex("😀a\nb");
+
+		assertEquals(2, lines.getColumn(1));
+		assertEquals(2, lines.getLine(3));
+	}
+
+	@Test
+	void testNodesHaveSourceRanges() {
+		for (boolean direct : new boolean[]{false, true}) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setDirectASTConstruction(direct);
+			pipeline.parseString(INPUT);
+			AST ast = pipeline.getAST();
+
+			Stylerule rule = (Stylerule) ast.root.getChild(0);
+			Declaration declaration = (Declaration) rule.body.get(0);
+			assertEquals(0, rule.getSourceStart());
+			assertEquals(INPUT.indexOf('}'), rule.getSourceStop());
+			assertEquals(INPUT.indexOf("width"), declaration.getSourceStart());
+			assertEquals(INPUT.indexOf(';'), declaration.getSourceStop());
+			assertEquals(INPUT.indexOf("width"), declaration.property.getSourceStart());
+			assertEquals(INPUT.indexOf("10px"), declaration.expression.getSourceStart());
+			assertEquals(INPUT.indexOf("10px") + 3, declaration.expression.getSourceStop());
+		}
+	}
+
+	@Test
+	void testInternedLeavesHaveNoSourceRanges() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setInterning(true);
+		pipeline.parseString(INPUT);
+
+		Declaration declaration = (Declaration) ((Stylerule) pipeline.getAST().root.getChild(0)).body.get(0);
+		//Interned leaves stand for all their occurrences
+		assertFalse(declaration.property.hasSourceRange());
+		assertFalse(declaration.expression.hasSourceRange());
+		assertEquals(INPUT.indexOf("width"), declaration.getSourceStart());
+	}
+
+	@Test
+	void testErrorsHaveLineAndColumn() {
+		for (boolean flat : new boolean[]{false, true}) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setFlatASTMode(flat);
+			pipeline.parseString(INPUT);
+
+			assertFalse(pipeline.check());
+			assertTrue(pipeline.getErrors().contains("ERROR at 4:12: Variable 'X' is being used outside of its scope."),
+					() -> String.join("\n", pipeline.getErrors()));
+			//The declaration comes before its expression
+			SemanticError declarationError = pipeline.getAST().getErrors().get(0);
+			SemanticError referenceError = pipeline.getAST().getErrors().get(1);
+			assertEquals(4, declarationError.line);
+			assertEquals(5, declarationError.column);
+			assertEquals(4, referenceError.line);
+			assertEquals(12, referenceError.column);
+		}
+	}
+
+	@Test
+	void testErrorsWithoutSourceHaveNoPosition() {
+		assertEquals("ERROR: Something", new SemanticError("Something").toString());
+	}
+
+	@Test
+	void testSyntaxErrorsHaveLineAndColumn() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString("p {\n  width: #ff;\n}");
+
+		assertFalse(pipeline.isParsed());
+		assertTrue(pipeline.getErrors().get(0).startsWith("Syntax error at 2:"), pipeline.getErrors().get(0));
+	}
+}
@@ -0,0 +1,142 @@
+package nl.han.ica.icss.cli;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+class BatchCompilerTest {
+
+    private static final String VALID = "Width := 10px;\np {\n\twidth: Width + 2px;\n}\n";
+    private static final String TOO_LARGE = "p { width: 99999999999px; }\n";
+    private static final String UNDEFINED = "p { width: Width; }\n";
+
+    @TempDir
+    Path root;
+
+    private Path write(String relative, String content) throws IOException {
+        Path file = root.resolve(relative);
+        Files.createDirectories(file.getParent());
+        Files.writeString(file, content);
+        return file;
+    }
+
+    private static String compile(String input) {
+        Pipeline pipeline = new Pipeline();
+        pipeline.parseString(input);
+        pipeline.check();
+        pipeline.transform();
+        return pipeline.generate();
+    }
+
+    private static CompileResult resultFor(List<CompileResult> results, Path source) {
+        return results.stream().filter(result -> result.source.equals(source)).findFirst().orElseThrow();
+    }
+
+    @Test
+    void testMirrorsTargets() {
+        Path input = root.resolve("in");
+        Path source = input.resolve("themes/dark/site.icss");
+
+        assertEquals(input.resolve("themes/dark/site.css"), new BatchCompiler(input, null, 1).targetFor(source));
+        assertEquals(root.resolve("out/themes/dark/site.css"),
+                new BatchCompiler(input, root.resolve("out"), 1).targetFor(source));
+    }
+
+    @Test
+    void testCompilesAllFiles() throws IOException {
+        Path first = write("in/a.icss", VALID);
+        Path second = write("in/sub/b.icss", VALID);
+
+        List<CompileResult> results = new BatchCompiler(root.resolve("in"), root.resolve("out"), 2).compileAll();
+
+        assertEquals(2, results.size());
+        assertTrue(results.stream().allMatch(CompileResult::isSuccess));
+        assertEquals(compile(VALID), Files.readString(root.resolve("out/a.css")));
+        assertEquals(compile(VALID), Files.readString(root.resolve("out/sub/b.css")));
+        assertEquals(first, results.get(0).source);
+        assertEquals(second, results.get(1).source);
+    }
+
+    @Test
+    void testReportsFailedFilesAndCompilesTheOthers() throws IOException {
+        Path valid = write("in/a.icss", VALID);
+        Path tooLarge = write("in/b.icss", TOO_LARGE);
+        Path undefined = write("in/c.icss", UNDEFINED);
+
+        List<CompileResult> results = new BatchCompiler(root.resolve("in"), null, 2).compileAll();
+
+        assertEquals(3, results.size());
+        assertTrue(resultFor(results, valid).isSuccess());
+        assertTrue(Files.exists(root.resolve("in/a.css")));
+        CompileResult exception = resultFor(results, tooLarge);
+        assertFalse(exception.isSuccess());
+        assertTrue(exception.errors.get(0).contains("NumberFormatException"), exception.errors.toString());
+        assertFalse(resultFor(results, undefined).isSuccess());
+        assertFalse(Files.exists(root.resolve("in/b.css")));
+        assertFalse(Files.exists(root.resolve("in/c.css")));
+    }
+
+    @Test
+    void testCompilesPercentages() throws IOException {
+        Path source = write("in/a.icss", "p { width: 50%; height: 40px; }\n");
+
+        CompileResult result = new BatchCompiler(root.resolve("in"), null, 1).compileFile(source);
+
+        assertTrue(result.isSuccess(), result.errors::toString);
+        assertEquals("p {\n  width: 50%;\n  height: 40px;\n}\n\n", Files.readString(root.resolve("in/a.css")));
+    }
+
+    @Test
+    void testDeletesPartialOutput() throws IOException {
+        Path source = write("in/a.icss", VALID);
+        //The .css.gz cannot be created where there is a directory
+        Files.createDirectories(root.resolve("in/a.css.gz/blocked"));
+        BatchCompiler compiler = new BatchCompiler(root.resolve("in"), null, 1);
+        compiler.setGzipLevel(6);
+
+        CompileResult result = compiler.compileFile(source);
+
+        assertFalse(result.isSuccess());
+        assertFalse(Files.exists(root.resolve("in/a.css")));
+    }
+
+    @Test
+    void testWritesGzipNextToCSS() throws IOException {
+        write("in/a.icss", VALID);
+        BatchCompiler compiler = new BatchCompiler(root.resolve("in"), root.resolve("out"), 1);
+        compiler.setGzipLevel(9);
+
+        assertTrue(compiler.compileAll().get(0).isSuccess());
+
+        try (InputStream gzip = new GZIPInputStream(Files.newInputStream(root.resolve("out/a.css.gz")))) {
+            assertEquals(Files.readString(root.resolve("out/a.css")), new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+        }
+        assertEquals(compile(VALID), Files.readString(root.resolve("out/a.css")));
+        assertThrows(IllegalArgumentException.class, () -> compiler.setGzipLevel(10));
+    }
+
+    @Test
+    void testWritesSourceMaps() throws IOException {
+        write("in/sub/a.icss", VALID);
+        BatchCompiler compiler = new BatchCompiler(root.resolve("in"), root.resolve("out"), 1);
+        compiler.setSourceMaps(true);
+
+        assertTrue(compiler.compileAll().get(0).isSuccess());
+
+        assertEquals(compile(VALID) + "/*# sourceMappingURL=a.css.map */\n", Files.readString(root.resolve("out/sub/a.css")));
+        String map = Files.readString(root.resolve("out/sub/a.css.map"));
+        assertTrue(map.startsWith("{\"version\":3,\"file\":\"a.css\",\"sources\":[\"../../in/sub/a.icss\"]"), map);
+        //p on line 2 and width on line 3 of the source
+        assertTrue(map.contains("\"mappings\":\"AACA;EACC\""), map);
+    }
+}
@@ -0,0 +1,85 @@
+package nl.han.ica.icss.generator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.InflaterInputStream;
+
+class CompressedOutputTest {
+
+	private static final String INPUT = new WorkloadGenerator(24)
+			.setRules(2000)
+			.setVariables(8)
+			.setNestingDepth(2)
+			.generate();
+
+	private static Pipeline transformed() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(INPUT);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		return pipeline;
+	}
+
+	private static String read(InputStream in) throws IOException {
+		try (in) {
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	@Test
+	void testWritesPlainAndGzipInOnePass() throws IOException {
+		Pipeline pipeline = transformed();
+		ByteArrayOutputStream css = new ByteArrayOutputStream();
+		ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+		try (OutputStream out = CompressedOutput.both(css, CompressedOutput.gzip(gzip, 9))) {
+			pipeline.generate(out);
+		}
+
+		String expected = pipeline.generate();
+		assertEquals(expected, css.toString(StandardCharsets.UTF_8));
+		assertEquals(expected, read(new GZIPInputStream(new ByteArrayInputStream(gzip.toByteArray()))));
+		assertTrue(gzip.size() < css.size() / 4, gzip.size() + " of " + css.size() + " bytes");
+	}
+
+	@Test
+	void testDeflatesGeneratorOutput() throws IOException {
+		Pipeline pipeline = transformed();
+		ByteArrayOutputStream deflated = new ByteArrayOutputStream();
+		try (OutputStream out = CompressedOutput.deflate(deflated, 6)) {
+			new Generator().generate(pipeline.getAST(), Channels.newChannel(out));
+		}
+
+		assertEquals(pipeline.generate(), read(new InflaterInputStream(new ByteArrayInputStream(deflated.toByteArray()))));
+	}
+
+	@Test
+	void testUsesTheCompressionLevel() throws IOException {
+		Pipeline pipeline = transformed();
+		int[] sizes = new int[3];
+		int[] levels = {0, 1, 9};
+		for (int i = 0; i < levels.length; i++) {
+			ByteArrayOutputStream gzip = new ByteArrayOutputStream();
+			try (OutputStream out = CompressedOutput.gzip(gzip, levels[i])) {
+				pipeline.generate(out);
+			}
+			sizes[i] = gzip.size();
+		}
+
+		assertTrue(sizes[0] > pipeline.generate().length());
+		assertTrue(sizes[1] > sizes[2]);
+		assertThrows(IllegalArgumentException.class, () -> CompressedOutput.gzip(new ByteArrayOutputStream(), 10));
+		assertThrows(IllegalArgumentException.class, () -> CompressedOutput.deflate(new ByteArrayOutputStream(), -2));
+	}
+}
@@ -0,0 +1,91 @@
+package nl.han.ica.icss.generator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+class MinifiedGeneratorTest {
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static String minify(String input, boolean flat) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setFlatASTMode(flat);
+		pipeline.setMinifiedOutput(true);
+		pipeline.parseString(input);
+		pipeline.check();
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	@Test
+	void testMinifiesFixture() throws IOException {
+		String css = minify(readTestFile("level3.icss"), false);
+
+		assertEquals("p{background-color:#fff;width:500px;height:20px}a{color:#f00}#menu{width:520px}" +
+				".menu{color:#000;background-color:#f00}", css);
+	}
+
+	@Test
+	void testKeepsLastDeclarationOfAProperty() {
+		assertEquals("p{height:5px;width:20px}", minify("p { width: 10px; height: 5px; width: 20px; }", false));
+		assertEquals("p{width:10px}", minify("p { width: 10px; width: 2px - 1px; }", false));
+		assertEquals("a{color:#123456}", minify("p { width: 2px - 1px; } a { color: #123456; }", false));
+	}
+
+	@Test
+	void testMergesRulesWithTheSameDeclarations() {
+		assertEquals("a,c,#d{color:#f00}b{width:10px}",
+				minify("a { color: #ff0000; } b { width: 10px; } c { color: #ff0000; } #d { color: #ff0000; }", false));
+		assertEquals("a,c{color:#f00;width:1px}",
+				minify("a { color: #ff0000; width: 1px; } c { width: 1px; color: #ff0000; width: 1px; }", false));
+	}
+
+	@Test
+	void testDoesNotMoveRulesPastConflictingRules() {
+		String css = minify("a { color: #ff0000; } b { color: #0000ff; } c { color: #ff0000; }", false);
+
+		assertEquals("a{color:#f00}b{color:#00f}c{color:#f00}", css);
+	}
+
+	@Test
+	void testFlatAndStreamingOutputAreTheSame() throws IOException {
+		String input = new WorkloadGenerator(22)
+				.setRules(3000)
+				.setVariables(6)
+				.setExpressionDepth(2)
+				.setNestingDepth(2)
+				.generate();
+		String css = minify(input, false);
+		assertEquals(css, minify(input, true));
+
+		for (boolean flat : new boolean[]{false, true}) {
+			Pipeline pipeline = new Pipeline();
+			pipeline.setFlatASTMode(flat);
+			pipeline.setMinifiedOutput(true);
+			pipeline.parseString(input);
+			pipeline.check();
+			pipeline.transform();
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			pipeline.generate(bytes);
+			assertEquals(css, bytes.toString(StandardCharsets.UTF_8));
+		}
+
+		Pipeline pretty = new Pipeline();
+		pretty.parseString(input);
+		pretty.check();
+		pretty.transform();
+		assertTrue(css.length() < pretty.generate().length() * 3 / 4);
+	}
+}
@@ -0,0 +1,122 @@
+package nl.han.ica.icss.generator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+class ParallelGeneratorTest {
+
+	private static Pipeline transformed(String input, boolean flat) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setFlatASTMode(flat);
+		pipeline.parseString(input);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		return pipeline;
+	}
+
+	private static String input(int rules) {
+		return new WorkloadGenerator(rules)
+				.setRules(rules)
+				.setVariables(8)
+				.setExpressionDepth(2)
+				.setNestingDepth(2)
+				.generate();
+	}
+
+	@Test
+	void testWritesTheSameCSSAcrossChunkBoundaries() throws IOException {
+		for (int rules : new int[]{1, ParallelGeneration.CHUNK_SIZE - 1, ParallelGeneration.CHUNK_SIZE,
+				ParallelGeneration.CHUNK_SIZE + 1, 5000}) {
+			String input = input(rules);
+			Pipeline pipeline = transformed(input, false);
+			Pipeline flatPipeline = transformed(input, true);
+			String css = pipeline.generate();
+
+			Generator generator = new Generator();
+			generator.setParallel(true);
+			generator.setParallelThreshold(1);
+			assertEquals(css, generator.generate(pipeline.getAST()));
+			StringWriter writer = new StringWriter();
+			generator.generate(pipeline.getAST(), writer);
+			assertEquals(css, writer.toString());
+
+			FlatGenerator flatGenerator = new FlatGenerator();
+			flatGenerator.setParallel(true);
+			flatGenerator.setParallelThreshold(1);
+			assertEquals(css, flatGenerator.generate(flatPipeline.getFlatAST()));
+			StringWriter flatWriter = new StringWriter();
+			flatGenerator.generate(flatPipeline.getFlatAST(), flatWriter);
+			assertEquals(css, flatWriter.toString());
+		}
+	}
+
+	@Test
+	void testPipelineWritesTheSameCSS() throws IOException {
+		String input = input(ParallelGeneration.DEFAULT_THRESHOLD * 2);
+		for (boolean flat : new boolean[]{false, true}) {
+			Pipeline pipeline = transformed(input, flat);
+			String css = pipeline.generate();
+			pipeline.setParallelGeneration(true);
+
+			assertEquals(css, pipeline.generate());
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			pipeline.generate(bytes);
+			assertEquals(css, bytes.toString(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void testSmallStylesheetsAndSourceMapsStaySequential() {
+		Pipeline small = transformed(input(10), false);
+		small.setParallelGeneration(true);
+		assertEquals(transformed(input(10), false).generate(), small.generate());
+
+		String input = input(ParallelGeneration.DEFAULT_THRESHOLD * 2);
+		Pipeline mapped = new Pipeline();
+		mapped.setSourceMaps(true);
+		mapped.parseString(input);
+		mapped.check();
+		mapped.transform();
+		String css = mapped.generate();
+		String mappings = mapped.getSourceMap().getMappings();
+
+		mapped.setParallelGeneration(true);
+		assertEquals(css, mapped.generate());
+		assertEquals(mappings, mapped.getSourceMap().getMappings());
+	}
+
+	@Test
+	void testReportsOutputErrors() {
+		Pipeline pipeline = transformed(input(3000), false);
+		Generator generator = new Generator();
+		generator.setParallel(true);
+		generator.setParallelThreshold(1);
+		Appendable full = new Appendable() {
+			@Override
+			public Appendable append(CharSequence csq) throws IOException {
+				throw new IOException("Disk full");
+			}
+
+			@Override
+			public Appendable append(CharSequence csq, int start, int end) throws IOException {
+				return append(csq);
+			}
+
+			@Override
+			public Appendable append(char c) throws IOException {
+				return append(String.valueOf(c));
+			}
+		};
+
+		IOException exception = assertThrows(IOException.class, () -> generator.generate(pipeline.getAST(), full));
+		assertEquals("Disk full", exception.getMessage());
+	}
+}
@@ -0,0 +1,167 @@
+package nl.han.ica.icss.generator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+class SourceMapTest {
+
+	private static final String BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static Pipeline compile(String input, boolean flat, boolean minified, boolean sourceMaps) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setFlatASTMode(flat);
+		pipeline.setMinifiedOutput(minified);
+		pipeline.setSourceMaps(sourceMaps);
+		pipeline.parseString(input);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		return pipeline;
+	}
+
+	/*
+	 Decodes the mappings into {generated line, generated column, source line, source column}.
+	 */
+	private static List<int[]> decode(String mappings) {
+		List<int[]> segments = new ArrayList<>();
+		int line = 0;
+		int[] previous = new int[4];
+		int field = 0;
+		int[] segment = new int[4];
+		int value = 0;
+		int shift = 0;
+		for (char c : (mappings + ";").toCharArray()) {
+			if (c == ',' || c == ';') {
+				if (field > 0) {
+					assertEquals(4, field);
+					segments.add(new int[]{line, segment[0], segment[2], segment[3]});
+				}
+				field = 0;
+				if (c == ';') {
+					line++;
+					previous[0] = 0;
+				}
+				continue;
+			}
+			int digit = BASE64.indexOf(c);
+			value |= (digit & 0x1f) << shift;
+			shift += 5;
+			if ((digit & 0x20) == 0) {
+				int decoded = (value & 1) == 1 ? -(value >>> 1) : value >>> 1;
+				previous[field] += decoded;
+				segment[field] = previous[field];
+				field++;
+				value = 0;
+				shift = 0;
+			}
+		}
+		return segments;
+	}
+
+	private static String wordAt(String[] lines, int line, int column) {
+		String rest = lines[line].substring(column);
+		int end = 0;
+		while (end < rest.length() && (Character.isLetterOrDigit(rest.charAt(end)) || "-_#.".indexOf(rest.charAt(end)) >= 0)) {
+			end++;
+		}
+		return rest.substring(0, end);
+	}
+
+	/*
+	 Every segment points at a selector or property and at the same name in the source.
+	 */
+	private static int assertMapsToSource(String input, String css, SourceMap sourceMap) {
+		List<int[]> segments = decode(sourceMap.getMappings());
+		assertEquals(sourceMap.getSegmentCount(), segments.size());
+		String[] cssLines = css.split("\n", -1);
+		String[] inputLines = input.split("\n", -1);
+		for (int[] segment : segments) {
+			String generated = wordAt(cssLines, segment[0], segment[1]);
+			assertFalse(generated.isEmpty(), "Nothing generated at " + segment[0] + ":" + segment[1]);
+			assertEquals(generated, wordAt(inputLines, segment[2], segment[3]));
+		}
+		return segments.size();
+	}
+
+	@Test
+	void testMapsSelectorsAndDeclarations() throws IOException {
+		String input = readTestFile("level1.icss");
+		Pipeline pipeline = compile(input, false, false, true);
+		String css = pipeline.generate();
+
+		List<int[]> segments = decode(pipeline.getSourceMap().getMappings());
+		//p, background-color, width, a, color, #menu, width, .menu, color
+		assertEquals(9, segments.size());
+		assertArrayEquals(new int[]{0, 0, 5, 0}, segments.get(0));
+		assertArrayEquals(new int[]{1, 2, 6, 1}, segments.get(1));
+		assertArrayEquals(new int[]{2, 2, 7, 1}, segments.get(2));
+		assertArrayEquals(new int[]{5, 0, 10, 0}, segments.get(3));
+		assertMapsToSource(input, css, pipeline.getSourceMap());
+	}
+
+	@Test
+	void testMapsEveryMode() {
+		String input = new WorkloadGenerator(23)
+				.setRules(1500)
+				.setVariables(6)
+				.setExpressionDepth(2)
+				.setNestingDepth(2)
+				.generate();
+		for (boolean flat : new boolean[]{false, true}) {
+			for (boolean minified : new boolean[]{false, true}) {
+				Pipeline pipeline = compile(input, flat, minified, true);
+				String css = pipeline.generate();
+
+				assertEquals(compile(input, flat, minified, false).generate(), css);
+				assertTrue(assertMapsToSource(input, css, pipeline.getSourceMap()) > 1500);
+			}
+		}
+	}
+
+	@Test
+	void testStreamsTheSameMap() throws IOException {
+		String input = new WorkloadGenerator(24).setRules(2000).setNestingDepth(1).generate();
+		Pipeline pipeline = compile(input, false, false, true);
+		String css = pipeline.generate();
+		String mappings = pipeline.getSourceMap().getMappings();
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		pipeline.generate(bytes);
+		assertEquals(css, bytes.toString(StandardCharsets.UTF_8));
+		assertEquals(mappings, pipeline.getSourceMap().getMappings());
+	}
+
+	@Test
+	void testHasNoMapWhenDisabled() {
+		Pipeline pipeline = compile("p { width: 1px; }", false, false, false);
+		pipeline.generate();
+
+		assertNull(pipeline.getSourceMap());
+	}
+
+	@Test
+	void testWritesVersion3Json() {
+		Pipeline pipeline = compile("p { width: 1px; }\na { color: #ff0000; }", false, false, true);
+		pipeline.generate();
+
+		assertEquals("{\"version\":3,\"file\":\"out.css\",\"sources\":[\"src/in \\\"1\\\".icss\"],\"names\":[]," +
+						"\"mappings\":\"AAAA;EAAI;;;AACJ;EAAI\"}\n",
+				pipeline.getSourceMap().toJson("out.css", "src/in \"1\".icss"));
+		assertEquals("/*# sourceMappingURL=out.css.map */\n", SourceMap.comment("out.css.map"));
+	}
+}
@@ -0,0 +1,117 @@
+package nl.han.ica.icss.generator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+
+class StreamingGeneratorTest {
+
+	private static final String INPUT = new WorkloadGenerator(21)
+			.setRules(2000)
+			.setVariables(9)
+			.setExpressionDepth(2)
+			.setNestingDepth(2)
+			.generate();
+
+	private static Pipeline transformed(boolean flat) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setFlatASTMode(flat);
+		pipeline.parseString(INPUT);
+		assertTrue(pipeline.check());
+		pipeline.transform();
+		return pipeline;
+	}
+
+	/*
+	 Remembers the largest piece of output it was given at once.
+	 */
+	private static class ChunkRecorder implements Appendable {
+		final StringBuilder text = new StringBuilder();
+		int appends = 0;
+		int largestAppend = 0;
+		int failAfter = Integer.MAX_VALUE;
+
+		@Override
+		public Appendable append(CharSequence csq) throws IOException {
+			if (appends++ == failAfter) {
+				throw new IOException("Disk full");
+			}
+			largestAppend = Math.max(largestAppend, csq.length());
+			text.append(csq);
+			return this;
+		}
+
+		@Override
+		public Appendable append(CharSequence csq, int start, int end) throws IOException {
+			return append(csq.subSequence(start, end));
+		}
+
+		@Override
+		public Appendable append(char c) throws IOException {
+			return append(String.valueOf(c));
+		}
+	}
+
+	@Test
+	void testStreamsTheSameCSS() throws IOException {
+		Pipeline pipeline = transformed(false);
+		String css = pipeline.generate();
+
+		StringWriter writer = new StringWriter();
+		new Generator().generate(pipeline.getAST(), writer);
+		assertEquals(css, writer.toString());
+
+		ByteArrayOutputStream channelBytes = new ByteArrayOutputStream();
+		new Generator().generate(pipeline.getAST(), Channels.newChannel(channelBytes));
+		assertEquals(css, channelBytes.toString(StandardCharsets.UTF_8));
+
+		ByteArrayOutputStream streamBytes = new ByteArrayOutputStream();
+		pipeline.generate(streamBytes);
+		assertEquals(css, streamBytes.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testStreamsTheSameCSSInFlatMode() throws IOException {
+		Pipeline pipeline = transformed(true);
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		pipeline.generate(bytes);
+
+		assertEquals(pipeline.generate(), bytes.toString(StandardCharsets.UTF_8));
+		assertEquals(transformed(false).generate(), bytes.toString(StandardCharsets.UTF_8));
+	}
+
+	@Test
+	void testWritesInBoundedPieces() throws IOException {
+		Pipeline pipeline = transformed(false);
+		ChunkRecorder recorder = new ChunkRecorder();
+		new Generator().generate(pipeline.getAST(), recorder);
+
+		ChunkRecorder flatRecorder = new ChunkRecorder();
+		new FlatGenerator().generate(transformed(true).getFlatAST(), flatRecorder);
+
+		for (ChunkRecorder written : new ChunkRecorder[]{recorder, flatRecorder}) {
+			assertEquals(pipeline.generate(), written.text.toString());
+			assertTrue(written.appends > 10);
+			//A piece is at most one buffer and the stylerule that filled it
+			assertTrue(written.largestAppend < Generator.BUFFER_SIZE + 1024, written.largestAppend + " characters at once");
+		}
+	}
+
+	@Test
+	void testReportsOutputErrors() {
+		Pipeline pipeline = transformed(false);
+		ChunkRecorder failing = new ChunkRecorder();
+		failing.failAfter = 2;
+
+		IOException exception = assertThrows(IOException.class, () -> new Generator().generate(pipeline.getAST(), failing));
+		assertEquals("Disk full", exception.getMessage());
+	}
+}
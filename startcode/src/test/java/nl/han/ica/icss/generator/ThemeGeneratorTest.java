@@ -0,0 +1,194 @@
+package nl.han.ica.icss.generator;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.transforms.PersistentEvaluator;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.stream.Collectors;
+
+class ThemeGeneratorTest {
+
+	private static final String THEMED =
+			"Base := 10px;\n" +
+			"Accent := #00ff00;\n" +
+			"Dark := FALSE;\n" +
+			"p { width: Base; color: #ffffff; }\n" +
+			"Base := Base + 2px;\n" +
+			"Base := 4px - 1px;\n" +
+			"div {\n" +
+			"  Local := Base + 5px;\n" +
+			"  width: Local;\n" +
+			"  Base := 3px;\n" +
+			"  height: Base;\n" +
+			"  if[Dark] { Base := 100px; color: Accent; }\n" +
+			"  background-color: Accent;\n" +
+			"  color: #ffffff;\n" +
+			"}\n" +
+			"span { width: 8px - 2px; height: 4px; }\n";
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	/*
+	 What the whole pipeline generates with the top-level assignments of the theme replaced.
+	 */
+	private static String generateWithPipeline(String input, Map<String, Literal> theme) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		assertTrue(pipeline.check(), pipeline.getErrors().toString());
+		for (ASTNode node : pipeline.getAST().root.body) {
+			if (node instanceof VariableAssignment) {
+				VariableAssignment assignment = (VariableAssignment) node;
+				Literal value = theme.get(assignment.name.name);
+				if (value != null) {
+					assignment.expression = value;
+				}
+			}
+		}
+		pipeline.transform();
+		return pipeline.generate();
+	}
+
+	/*
+	 A theme with a different value of the same kind for every top-level variable.
+	 */
+	private static Map<String, Literal> randomTheme(String input, Random random) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		pipeline.check();
+		AST evaluated = new PersistentEvaluator().apply(pipeline.getAST());
+
+		Map<String, Literal> theme = new HashMap<>();
+		for (ASTNode node : evaluated.root.body) {
+			if (node instanceof VariableAssignment && ((VariableAssignment) node).expression instanceof Literal
+					&& random.nextBoolean()) {
+				VariableAssignment assignment = (VariableAssignment) node;
+				theme.putIfAbsent(assignment.name.name, randomLiteralLike(assignment.expression, random));
+			}
+		}
+		return theme;
+	}
+
+	private static Literal randomLiteralLike(Expression value, Random random) {
+		if (value instanceof PixelLiteral) {
+			return new PixelLiteral(random.nextInt(1000));
+		} else if (value instanceof PercentageLiteral) {
+			return new PercentageLiteral(random.nextInt(100));
+		} else if (value instanceof ScalarLiteral) {
+			return new ScalarLiteral(random.nextInt(10));
+		} else if (value instanceof BoolLiteral) {
+			return new BoolLiteral(random.nextBoolean());
+		}
+		return new ColorLiteral(String.format("#%06x", random.nextInt(1 << 24)));
+	}
+
+	private static void assertThemesLikePipeline(String input) {
+		ThemeGenerator themeGenerator = ThemeGenerator.fromSource(input);
+		Random random = new Random(input.length());
+		for (int i = 0; i < 8; i++) {
+			Map<String, Literal> theme = randomTheme(input, random);
+			assertEquals(generateWithPipeline(input, theme), themeGenerator.generate(theme));
+		}
+	}
+
+	@Test
+	void testGeneratesLikePipelineWithoutTheme() throws IOException {
+		for (int level = 0; level <= 3; level++) {
+			String input = readTestFile("level" + level + ".icss");
+			assertEquals(generateWithPipeline(input, Map.of()), ThemeGenerator.fromSource(input).generate(Map.of()));
+		}
+	}
+
+	@Test
+	void testGeneratesThemesLikePipeline() throws IOException {
+		Map<String, Literal> theme = Map.of(
+				"LinkColor", ThemeGenerator.parseLiteral("#336699"),
+				"ParWidth", ThemeGenerator.parseLiteral("640px"));
+		String input = readTestFile("level3.icss");
+		String css = ThemeGenerator.fromSource(input).generate(theme);
+
+		assertEquals(generateWithPipeline(input, theme), css);
+		assertTrue(css.contains("  width: 660px;\n"));
+		assertTrue(css.contains("  color: #336699;\n"));
+		assertThemesLikePipeline(input);
+	}
+
+	@Test
+	void testFollowsScopesAndReassignments() {
+		assertThemesLikePipeline(THEMED);
+
+		String css = ThemeGenerator.fromSource(THEMED).generate(Map.of("Base", new PixelLiteral(7)));
+		assertTrue(css.startsWith("p {\n  width: 7px;\n"));
+		assertTrue(css.contains("  width: 12px;\n  height: 3px;\n"));
+		assertTrue(css.contains("span {\n  width: ;\n  height: 4px;\n}"));
+	}
+
+	@Test
+	void testGeneratesGeneratedStylesheetsLikePipeline() {
+		for (int nesting = 0; nesting <= 2; nesting++) {
+			assertThemesLikePipeline(new WorkloadGenerator(nesting)
+					.setRules(100)
+					.setVariables(3 + nesting * 4)
+					.setExpressionDepth(3)
+					.setNestingDepth(nesting)
+					.generate());
+		}
+	}
+
+	@Test
+	void testOnlyDependentDeclarationsAreHoles() {
+		ThemeGenerator themeGenerator = ThemeGenerator.fromSource(THEMED);
+
+		assertEquals(Set.of("Base", "Accent", "Dark"), themeGenerator.getVariables());
+		//width: Base, width: Local and background-color: Accent; the local Base is constant
+		assertEquals(3, themeGenerator.getDependentDeclarationCount());
+	}
+
+	@Test
+	void testGeneratesManyThemesInOrder() {
+		String input = new WorkloadGenerator(1).setRules(200).setVariables(9).setNestingDepth(1).generate();
+		ThemeGenerator themeGenerator = ThemeGenerator.fromSource(input);
+		List<Map<String, Literal>> themes = new ArrayList<>();
+		for (int i = 0; i < 64; i++) {
+			themes.add(Map.of("Width0", new PixelLiteral(i)));
+		}
+
+		List<String> expected = themes.stream().map(themeGenerator::generate).collect(Collectors.toList());
+		assertEquals(expected, themeGenerator.generateAll(themes));
+		assertEquals(expected, themeGenerator.generateAll(themes.stream()).collect(Collectors.toList()));
+		assertEquals(64, new HashSet<>(expected).size());
+	}
+
+	@Test
+	void testRejectsInvalidThemes() {
+		ThemeGenerator themeGenerator = ThemeGenerator.fromSource(THEMED);
+
+		assertThrows(IllegalArgumentException.class, () -> themeGenerator.generate(Map.of("Unknown", new PixelLiteral(1))));
+		assertThrows(IllegalArgumentException.class, () -> themeGenerator.generate(Map.of("Base", new ColorLiteral("#000000"))));
+		assertThrows(IllegalArgumentException.class, () -> themeGenerator.generate(Map.of("Local", new PixelLiteral(1))));
+		assertThrows(IllegalArgumentException.class, () -> ThemeGenerator.fromSource("p { width: Undefined; }"));
+		assertThrows(IllegalArgumentException.class, () -> ThemeGenerator.parseLiteral("10px 20px"));
+		assertThrows(IllegalArgumentException.class, () -> ThemeGenerator.parseLiteral("width"));
+	}
+
+	@Test
+	void testParsesLiterals() {
+		assertEquals(new PixelLiteral(10), ThemeGenerator.parseLiteral("10px"));
+		assertEquals(new PercentageLiteral(50), ThemeGenerator.parseLiteral("50%"));
+		assertEquals(new ScalarLiteral(3), ThemeGenerator.parseLiteral(" 3 "));
+		assertEquals(new ColorLiteral("#ff0000"), ThemeGenerator.parseLiteral("#ff0000"));
+		assertEquals(new BoolLiteral(true), ThemeGenerator.parseLiteral("TRUE"));
+	}
+}
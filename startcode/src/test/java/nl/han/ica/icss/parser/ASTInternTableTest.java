@@ -0,0 +1,141 @@
+package nl.han.ica.icss.parser;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.Stylerule;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+class ASTInternTableTest {
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static final AST[] FIXTURES = {Fixtures.uncheckedLevel0(), Fixtures.uncheckedLevel1(),
+			Fixtures.uncheckedLevel2(), Fixtures.uncheckedLevel3()};
+
+	private static final String REPEATED = "p { color: #ff0000; width: 10px; }\n"
+			+ "a { color: #ff0000; width: 10px; }\n"
+			+ "p { color: #00ff00; }\n";
+
+	private static Pipeline interning() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.setInterning(true);
+		return pipeline;
+	}
+
+	private static Declaration declaration(AST ast, int rule, int index) {
+		return (Declaration) ((Stylerule) ast.root.getChild(rule)).body.get(index);
+	}
+
+	@Test
+	void testEqualLeavesAreShared() {
+		Pipeline pipeline = interning();
+		pipeline.parseString(REPEATED);
+		AST ast = pipeline.getAST();
+
+		assertSame(declaration(ast, 0, 0).property, declaration(ast, 1, 0).property);
+		assertSame(declaration(ast, 0, 0).expression, declaration(ast, 1, 0).expression);
+		assertSame(declaration(ast, 0, 1).expression, declaration(ast, 1, 1).expression);
+		assertSame(ast.root.getChild(0).getChild(0), ast.root.getChild(2).getChild(0));
+		assertNotSame(declaration(ast, 0, 0).expression, declaration(ast, 2, 0).expression);
+	}
+
+	@Test
+	void testWithoutInterningLeavesAreNotShared() {
+		Pipeline pipeline = new Pipeline();
+		assertFalse(pipeline.isInterning());
+		pipeline.parseString(REPEATED);
+		AST ast = pipeline.getAST();
+
+		assertNotSame(declaration(ast, 0, 0).expression, declaration(ast, 1, 0).expression);
+		assertEquals(declaration(ast, 0, 0).expression, declaration(ast, 1, 0).expression);
+	}
+
+	@Test
+	void testInternedNodesAreFrozen() {
+		Pipeline pipeline = interning();
+		pipeline.parseString(REPEATED);
+		Declaration declaration = declaration(pipeline.getAST(), 0, 0);
+
+		assertTrue(declaration.expression.isFrozen());
+		assertTrue(declaration.property.isFrozen());
+		assertFalse(declaration.isFrozen());
+		assertThrows(UnsupportedOperationException.class, () -> declaration.expression.setError("Shared"));
+	}
+
+	@Test
+	void testParsesToFixtures() throws IOException {
+		for (boolean direct : new boolean[]{false, true}) {
+			Pipeline pipeline = interning();
+			pipeline.setDirectASTConstruction(direct);
+			for (int level = 0; level < FIXTURES.length; level++) {
+				pipeline.parseString(readTestFile("level" + level + ".icss"));
+				assertEquals(FIXTURES[level], pipeline.getAST());
+			}
+		}
+	}
+
+	@Test
+	void testCompilesLikeWithoutInterning() throws IOException {
+		for (int level = 0; level < FIXTURES.length; level++) {
+			String input = readTestFile("level" + level + ".icss");
+			Pipeline interned = interning();
+			Pipeline plain = new Pipeline();
+
+			interned.parseString(input);
+			plain.parseString(input);
+			assertEquals(plain.check(), interned.check());
+			interned.transform();
+			plain.transform();
+			assertEquals(plain.generate(), interned.generate());
+		}
+	}
+
+	@Test
+	void testSharedTableIsUsedByAllPipelines() {
+		ASTInternTable table = new ASTInternTable();
+		Pipeline first = interning();
+		Pipeline second = interning();
+		first.setSharedInternTable(table);
+		second.setSharedInternTable(table);
+
+		first.parseString(REPEATED);
+		second.parseString(REPEATED);
+
+		assertSame(declaration(first.getAST(), 0, 0).expression, declaration(second.getAST(), 0, 0).expression);
+		assertEquals(7, table.size());
+	}
+
+	@Test
+	void testBoundedTableStopsGrowing() {
+		ASTInternTable table = new ASTInternTable(2);
+		Pipeline pipeline = interning();
+		pipeline.setSharedInternTable(table);
+
+		pipeline.parseString(REPEATED);
+
+		assertEquals(2, table.size());
+		assertEquals(Fixtures.uncheckedLevel0(), parseLevel0(table));
+	}
+
+	private AST parseLevel0(ASTInternTable table) {
+		Pipeline pipeline = interning();
+		pipeline.setSharedInternTable(table);
+		try {
+			pipeline.parseString(readTestFile("level0.icss"));
+		} catch (IOException e) {
+			fail(e);
+		}
+		return pipeline.getAST();
+	}
+}
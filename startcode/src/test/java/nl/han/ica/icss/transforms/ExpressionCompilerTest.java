@@ -0,0 +1,138 @@
+package nl.han.ica.icss.transforms;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.datastructures.scope.HANSymbolTable;
+import nl.han.ica.datastructures.scope.IHANScopeChain;
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.*;
+import nl.han.ica.icss.ast.literals.*;
+import nl.han.ica.icss.ast.operations.AddOperation;
+import nl.han.ica.icss.ast.operations.MultiplyOperation;
+import nl.han.ica.icss.ast.operations.SubtractOperation;
+import nl.han.ica.icss.ast.types.ExpressionType;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+
+class ExpressionCompilerTest {
+
+	private static Expression operation(Operation operation, Expression lhs, Expression rhs) {
+		return (Expression) operation.addChild(lhs).addChild(rhs);
+	}
+
+	private static void collectDeclarations(ASTNode node, List<Declaration> declarations) {
+		if (node instanceof Declaration) {
+			declarations.add((Declaration) node);
+		}
+		for (ASTNode child : node.getChildren()) {
+			collectDeclarations(child, declarations);
+		}
+	}
+
+	@Test
+	void testEvaluatesLikeExpressionEvaluator() {
+		for (int depth = 1; depth <= 4; depth++) {
+			String input = new WorkloadGenerator(depth)
+					.setRules(100)
+					.setVariables(12)
+					.setExpressionDepth(depth)
+					.setNestingDepth(1)
+					.generate();
+			Pipeline pipeline = new Pipeline();
+			pipeline.parseString(input);
+			AST ast = pipeline.getAST();
+
+			IHANScopeChain<String, Literal> values = new HANSymbolTable<>();
+			IHANScopeChain<String, CompiledExpression> slots = new HANSymbolTable<>();
+			values.pushScope();
+			slots.pushScope();
+			ExpressionEvaluator evaluator = new ExpressionEvaluator(values);
+			ExpressionCompiler compiler = new ExpressionCompiler(slots);
+			int[] slotValues = new int[ast.root.body.size()];
+			for (int i = 0; i < ast.root.body.size(); i++) {
+				if (ast.root.body.get(i) instanceof VariableAssignment) {
+					VariableAssignment assignment = (VariableAssignment) ast.root.body.get(i);
+					Literal value = evaluator.evaluate(assignment.expression);
+					CompiledExpression compiled = compiler.compile(value);
+					values.declare(assignment.name.name, value);
+					slots.declare(assignment.name.name, CompiledExpression.slot(i, compiled.getType()));
+					slotValues[i] = compiled.evaluate(null);
+				}
+			}
+
+			List<Declaration> declarations = new ArrayList<>();
+			collectDeclarations(ast.root, declarations);
+			for (Declaration declaration : declarations) {
+				Literal expected = evaluator.evaluate(declaration.expression);
+				CompiledExpression compiled = compiler.compile(declaration.expression);
+				if (expected == null) {
+					assertEquals(ExpressionType.UNDEFINED, compiled.getType(), declaration.expression.toString());
+				} else {
+					CompiledExpression literal = compiler.compile(expected);
+					assertEquals(literal.getType(), compiled.getType());
+					assertEquals(literal.evaluate(null), compiled.evaluate(slotValues));
+				}
+			}
+		}
+	}
+
+	@Test
+	void testFoldsConstants() {
+		IHANScopeChain<String, CompiledExpression> slots = new HANSymbolTable<>();
+		slots.pushScope();
+		slots.declare("Width", CompiledExpression.slot(0, ExpressionType.PIXEL));
+		ExpressionCompiler compiler = new ExpressionCompiler(slots);
+
+		CompiledExpression folded = compiler.compile(operation(new MultiplyOperation(),
+				new PercentageLiteral(50), operation(new AddOperation(), new ScalarLiteral(2), new ScalarLiteral(4))));
+		assertTrue(folded.isConstant());
+		assertEquals(ExpressionType.PIXEL, folded.getType());
+		assertEquals(3, folded.evaluate(null));
+
+		CompiledExpression variable = compiler.compile(operation(new AddOperation(), new VariableReference("Width"), new PixelLiteral(5)));
+		assertFalse(variable.isConstant());
+		assertEquals(15, variable.evaluate(new int[]{10}));
+
+		assertEquals(ExpressionType.UNDEFINED, compiler.compile(operation(new SubtractOperation(), new PixelLiteral(5), new PixelLiteral(1))).getType());
+		assertEquals(ExpressionType.UNDEFINED, compiler.compile(operation(new AddOperation(), new VariableReference("Width"), new ScalarLiteral(1))).getType());
+		assertEquals(ExpressionType.UNDEFINED, compiler.compile(new VariableReference("Unknown")).getType());
+	}
+
+	@Test
+	void testPacksColors() {
+		assertEquals(0x12ab0f, ExpressionCompiler.packColor("#12ab0f"));
+		assertEquals(0x12ab0f, new ExpressionCompiler(new HANSymbolTable<>()).compile(new ColorLiteral("#12ab0f")).evaluate(null));
+		assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.packColor("#12AB0F"));
+		assertThrows(IllegalArgumentException.class, () -> ExpressionCompiler.packColor("red"));
+	}
+
+	@Test
+	void testEvaluatesWithoutAllocating() {
+		IHANScopeChain<String, CompiledExpression> slots = new HANSymbolTable<>();
+		slots.pushScope();
+		slots.declare("Width", CompiledExpression.slot(0, ExpressionType.PIXEL));
+		slots.declare("Factor", CompiledExpression.slot(1, ExpressionType.SCALAR));
+		CompiledExpression compiled = new ExpressionCompiler(slots).compile(operation(new AddOperation(),
+				operation(new MultiplyOperation(), new VariableReference("Width"), new VariableReference("Factor")),
+				new PixelLiteral(1)));
+		int[] slotValues = {10, 3};
+
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		long sum = 0;
+		for (int i = 0; i < 100_000; i++) {
+			sum += compiled.evaluate(slotValues);
+		}
+		long before = threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+		for (int i = 0; i < 100_000; i++) {
+			sum += compiled.evaluate(slotValues);
+		}
+		long allocated = threads.getThreadAllocatedBytes(Thread.currentThread().getId()) - before;
+
+		assertEquals(200_000L * 31, sum);
+		assertTrue(allocated < 1024, allocated + " bytes allocated");
+	}
+}
@@ -0,0 +1,212 @@
+package nl.han.ica.icss.transforms;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+import nl.han.ica.icss.ast.AST;
+import nl.han.ica.icss.ast.ASTNode;
+import nl.han.ica.icss.ast.Declaration;
+import nl.han.ica.icss.ast.IfClause;
+import nl.han.ica.icss.ast.Literal;
+import nl.han.ica.icss.ast.Stylerule;
+import nl.han.ica.icss.ast.VariableAssignment;
+import nl.han.ica.icss.ast.literals.BoolLiteral;
+import nl.han.ica.icss.ast.literals.PixelLiteral;
+import nl.han.ica.icss.workload.WorkloadGenerator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+class PersistentEvaluatorTest {
+
+	String readTestFile(String resource) throws IOException {
+		try (InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(resource)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+	}
+
+	private static AST checkedAST(String input) {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		pipeline.check();
+		return pipeline.getAST();
+	}
+
+	private static List<String> inputs() {
+		List<String> inputs = new ArrayList<>();
+		for (int nesting = 0; nesting <= 3; nesting++) {
+			inputs.add(new WorkloadGenerator(nesting)
+					.setRules(200)
+					.setVariables(nesting * 5)
+					.setExpressionDepth(3)
+					.setNestingDepth(nesting)
+					.generate());
+			inputs.add(new WorkloadGenerator(nesting)
+					.setRules(200)
+					.setVariables(10)
+					.setNestingDepth(nesting)
+					.setErrorMode(WorkloadGenerator.ErrorMode.SEMANTIC)
+					.setErrorRate(0.2)
+					.generate());
+		}
+		return inputs;
+	}
+
+	private static void assertEvaluatesLikeEvaluator(String input) {
+		AST mutated = checkedAST(input);
+		new Evaluator().apply(mutated);
+
+		AST original = checkedAST(input);
+		String before = original.toString();
+		AST evaluated = new PersistentEvaluator().apply(original);
+
+		assertEquals(mutated, evaluated);
+		assertEquals(mutated.getErrors().toString(), evaluated.getErrors().toString());
+		assertEquals(before, original.toString());
+		assertEquals(checkedAST(input), original);
+	}
+
+	@Test
+	void testEvaluatesFixturesLikeEvaluator() throws IOException {
+		for (int level = 0; level <= 3; level++) {
+			assertEvaluatesLikeEvaluator(readTestFile("level" + level + ".icss"));
+		}
+	}
+
+	@Test
+	void testEvaluatesGeneratedStylesheetsLikeEvaluator() {
+		for (String input : inputs()) {
+			assertEvaluatesLikeEvaluator(input);
+		}
+	}
+
+	@Test
+	void testSharesUnchangedSubtrees() {
+		AST original = checkedAST("p { width: 10px; }\na { width: 10px + 2px; color: #ff0000; }");
+		AST evaluated = new PersistentEvaluator().apply(original);
+
+		Stylerule unchangedRule = (Stylerule) original.root.getChild(0);
+		Stylerule changedRule = (Stylerule) original.root.getChild(1);
+		Stylerule evaluatedRule = (Stylerule) evaluated.root.getChild(1);
+		assertSame(unchangedRule, evaluated.root.getChild(0));
+		assertNotSame(changedRule, evaluatedRule);
+		assertSame(changedRule.body.get(1), evaluatedRule.body.get(1));
+		assertSame(changedRule.selectors.get(0), evaluatedRule.selectors.get(0));
+		assertNotSame(changedRule.selectors, evaluatedRule.selectors);
+		assertEquals(new PixelLiteral(12), ((Declaration) evaluatedRule.body.get(0)).expression);
+	}
+
+	@Test
+	void testCopiedIfClausesHaveTheirOwnBody() {
+		AST original = checkedAST("B := TRUE;\np { if[B] { width: 10px; } }");
+		AST evaluated = new PersistentEvaluator().apply(original);
+
+		IfClause clause = (IfClause) ((Stylerule) original.root.getChild(1)).body.get(0);
+		IfClause evaluatedClause = (IfClause) ((Stylerule) evaluated.root.getChild(1)).body.get(0);
+		assertNotSame(clause, evaluatedClause);
+		assertSame(clause.body.get(0), evaluatedClause.body.get(0));
+		assertNotSame(clause.body, evaluatedClause.body);
+	}
+
+	@Test
+	void testFrozenNodesCannotChange() {
+		AST ast = checkedAST("p { width: 10px + 2px; }");
+		ast.root.freeze();
+		Stylerule rule = (Stylerule) ast.root.getChild(0);
+
+		assertTrue(rule.body.get(0).isFrozen());
+		assertThrows(UnsupportedOperationException.class, () -> rule.addChild(new Declaration("height")));
+		assertThrows(UnsupportedOperationException.class, () -> rule.setError("Not allowed"));
+		assertThrows(UnsupportedOperationException.class, () -> new Evaluator().apply(ast));
+		assertEquals(checkedAST("p { width: 10px + 2px; }"), ast);
+	}
+
+	@Test
+	void testEvaluatesOneASTConcurrently() throws Exception {
+		String input = inputs().get(7);
+		AST expected = new PersistentEvaluator().apply(checkedAST(input));
+		AST shared = checkedAST(input).freeze();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<AST>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				results.add(executor.submit(() -> new PersistentEvaluator().apply(shared)));
+			}
+			for (Future<AST> result : results) {
+				assertEquals(expected, result.get());
+				assertEquals(expected.getErrors().toString(), result.get().getErrors().toString());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/*
+	 What Evaluator gives with the top-level assignments of the bound variables replaced.
+	 */
+	private static AST evaluateWithReplacedAssignments(String input, Map<String, Literal> bindings) {
+		AST ast = checkedAST(input);
+		for (ASTNode node : ast.root.body) {
+			if (node instanceof VariableAssignment && bindings.containsKey(((VariableAssignment) node).name.name)) {
+				((VariableAssignment) node).expression = bindings.get(((VariableAssignment) node).name.name);
+			}
+		}
+		new Evaluator().apply(ast);
+		return ast;
+	}
+
+	@Test
+	void testEvaluatesOneASTConcurrentlyForManyBindings() throws Exception {
+		String input = "W := 10px;\nF := TRUE;\nW := W + 1px;\n"
+				+ "p { width: W; if[F] { W := 5px; height: W; } else { color: #ff0000; } }\na { width: W * 2; }";
+		AST shared = checkedAST(input).freeze();
+
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Map<String, Literal>> allBindings = new ArrayList<>();
+			List<Future<AST>> results = new ArrayList<>();
+			for (int i = 0; i < 16; i++) {
+				Map<String, Literal> bindings = Map.of("W", new PixelLiteral(i), "F", new BoolLiteral(i % 2 == 0));
+				allBindings.add(bindings);
+				results.add(executor.submit(() -> new PersistentEvaluator().apply(shared, bindings)));
+			}
+			//Both top-level assignments of W get the bound value, the one in the if-clause does not
+			for (int i = 0; i < 16; i++) {
+				assertEquals(evaluateWithReplacedAssignments(input, allBindings.get(i)), results.get(i).get());
+			}
+			assertNotEquals(results.get(2).get(), results.get(4).get());
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(evaluateWithReplacedAssignments(input, Map.of()), new PersistentEvaluator().apply(shared));
+		assertEquals(checkedAST(input), shared);
+	}
+
+	@Test
+	void testPipelineInImmutableMode() {
+		for (String input : inputs()) {
+			Pipeline mutable = new Pipeline();
+			Pipeline immutable = new Pipeline();
+			immutable.setImmutableAST(true);
+
+			mutable.parseString(input);
+			immutable.parseString(input);
+			assertEquals(mutable.check(), immutable.check());
+			mutable.transform();
+			immutable.transform();
+
+			assertTrue(immutable.getAST().root.isFrozen());
+			assertEquals(mutable.generate(), immutable.generate());
+			assertThrows(IllegalStateException.class, immutable::check);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+package nl.han.ica.icss.workload;
+
+import org.junit.jupiter.api.Test;
+import static org.junit.jupiter.api.Assertions.*;
+
+import nl.han.ica.icss.Pipeline;
+
+class WorkloadGeneratorTest {
+
+	@Test
+	void testSameSeedGivesSameStylesheet() {
+		String first = new WorkloadGenerator(7).setRules(50).setNestingDepth(2).generate();
+		String second = new WorkloadGenerator(7).setRules(50).setNestingDepth(2).generate();
+		String other = new WorkloadGenerator(8).setRules(50).setNestingDepth(2).generate();
+
+		assertEquals(first, second);
+		assertNotEquals(first, other);
+	}
+
+	@Test
+	void testGeneratedStylesheetsParseAndCheck() {
+		for (int nesting = 0; nesting <= 3; nesting++) {
+			String input = new WorkloadGenerator(nesting)
+					.setRules(200)
+					.setDeclarationsPerRule(4)
+					.setVariables(nesting * 5)
+					.setExpressionDepth(3)
+					.setNestingDepth(nesting)
+					.generate();
+			Pipeline pipeline = new Pipeline();
+			pipeline.parseString(input);
+
+			assertTrue(pipeline.isParsed(), () -> String.join("\n", pipeline.getErrors()));
+			assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		}
+	}
+
+	@Test
+	void testExpressionsEvaluateToValues() {
+		String input = new WorkloadGenerator(4).setRules(200).setExpressionDepth(4).generate();
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(input);
+		assertTrue(pipeline.check(), () -> String.join("\n", pipeline.getErrors()));
+		pipeline.transform();
+
+		assertTrue(input.contains(" * "));
+		assertFalse(input.contains(" - "));
+		assertFalse(pipeline.generate().contains(": ;"));
+	}
+
+	@Test
+	void testTargetSizeIsReached() {
+		String input = new WorkloadGenerator(1).setTargetSize(64 * 1024).generate();
+
+		assertTrue(input.length() >= 64 * 1024);
+		assertTrue(input.length() < 65 * 1024);
+	}
+
+	@Test
+	void testErrorModesProduceInvalidInput() {
+		Pipeline pipeline = new Pipeline();
+		pipeline.parseString(new WorkloadGenerator(3).setRules(100)
+				.setErrorMode(WorkloadGenerator.ErrorMode.SYNTAX).generate());
+		assertFalse(pipeline.isParsed());
+
+		pipeline.parseString(new WorkloadGenerator(3).setRules(100)
+				.setErrorMode(WorkloadGenerator.ErrorMode.SEMANTIC).generate());
+		assertTrue(pipeline.isParsed());
+		assertFalse(pipeline.check());
+	}
+}